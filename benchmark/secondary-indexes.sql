@@ -0,0 +1,192 @@
+-- Measures the latency of the main PostGresTerminologyBase queries on a
+-- generated base, before and after creating the indexes in
+-- V6__secondary_indexes.sql.
+--
+-- Everything is created in a separate "benchmark" schema, which is dropped
+-- at the start, so this can be run against any database, e.g.:
+--   psql -h localhost -U talismane -d terms-test -f benchmark/secondary-indexes.sql
+-- or make benchmark
+-- The size of the base can be changed with -v terms=... -v contexts=...
+--
+-- The results of the last run, along with the PostgreSQL version, base size
+-- and machine, are recorded in benchmark/README.md.
+
+\if :{?terms}
+\else
+  \set terms 1000000
+\endif
+\if :{?contexts}
+\else
+  \set contexts 5000000
+\endif
+
+\set ON_ERROR_STOP on
+
+DROP SCHEMA IF EXISTS benchmark CASCADE;
+CREATE SCHEMA benchmark;
+SET search_path = benchmark, public;
+
+-- the tables as defined by the migrations, without any secondary index
+CREATE TABLE project (
+  project_id integer NOT NULL,
+  project_code text NOT NULL,
+  CONSTRAINT pk_project PRIMARY KEY (project_id)
+);
+
+CREATE TABLE file (
+  file_id integer NOT NULL,
+  file_name text NOT NULL,
+  CONSTRAINT pk_file PRIMARY KEY (file_id)
+);
+
+CREATE TABLE term (
+  term_id integer NOT NULL,
+  term_marked boolean DEFAULT false NOT NULL,
+  term_text text,
+  term_lexical_words smallint DEFAULT 0 NOT NULL,
+  CONSTRAINT pk_term PRIMARY KEY (term_id),
+  CONSTRAINT uk_term UNIQUE (term_text)
+);
+
+CREATE TABLE term_expansions (
+  termexp_term_id integer NOT NULL,
+  termexp_expansion_id integer NOT NULL,
+  CONSTRAINT pk_termexp PRIMARY KEY (termexp_term_id, termexp_expansion_id)
+);
+
+CREATE TABLE term_heads (
+  termhead_term_id integer NOT NULL,
+  termhead_head_id integer NOT NULL,
+  CONSTRAINT pk_termhead PRIMARY KEY (termhead_term_id, termhead_head_id)
+);
+
+CREATE TABLE context (
+  context_id integer NOT NULL,
+  context_start_row integer,
+  context_start_column integer,
+  context_text text NOT NULL,
+  context_file_id integer NOT NULL,
+  context_term_id integer NOT NULL,
+  context_end_row integer,
+  context_end_column integer,
+  context_project_id integer NOT NULL,
+  CONSTRAINT pk_context PRIMARY KEY (context_id),
+  CONSTRAINT uk_context UNIQUE (context_project_id, context_file_id, context_term_id, context_start_row, context_start_column)
+);
+
+CREATE TABLE term_stats (
+  stats_project_id integer NOT NULL,
+  stats_term_id integer NOT NULL,
+  stats_frequency integer DEFAULT 0 NOT NULL,
+  stats_head_count integer DEFAULT 0 NOT NULL,
+  stats_expansion_count integer DEFAULT 0 NOT NULL,
+  stats_lexical_words smallint DEFAULT 0 NOT NULL,
+  stats_term_text text,
+  CONSTRAINT pk_term_stats PRIMARY KEY (stats_project_id, stats_term_id)
+);
+
+-- generated data: term frequencies follow a rough Zipf distribution, and each
+-- term has two expansions and one head
+INSERT INTO project VALUES (1, 'benchmark'), (2, 'other');
+INSERT INTO file SELECT i, 'file' || i || '.txt' FROM generate_series(1, 1000) i;
+
+INSERT INTO term (term_id, term_text, term_lexical_words)
+SELECT i, 'term ' || i, 1 + i % 4 FROM generate_series(1, :terms) i;
+
+INSERT INTO term_expansions
+SELECT i, e FROM generate_series(1, :terms) i,
+  LATERAL (VALUES (1 + (i * 7) % :terms), (1 + (i * 13) % :terms)) AS x(e)
+ON CONFLICT DO NOTHING;
+
+INSERT INTO term_heads
+SELECT i, 1 + (i / 3) FROM generate_series(1, :terms) i
+ON CONFLICT DO NOTHING;
+
+INSERT INTO context (context_id, context_start_row, context_start_column, context_text, context_file_id, context_term_id, context_project_id)
+SELECT i, i / 1000, i % 1000, 'context ' || i, 1 + i % 1000,
+  1 + floor(power(random(), 3) * :terms)::integer, 1 + i % 2
+FROM generate_series(1, :contexts) i
+ON CONFLICT DO NOTHING;
+
+INSERT INTO term_stats (stats_project_id, stats_term_id, stats_frequency, stats_lexical_words, stats_term_text)
+SELECT context_project_id, term_id, count(*), term_lexical_words, term_text
+FROM term INNER JOIN context ON context_term_id = term_id
+GROUP BY context_project_id, term_id, term_lexical_words, term_text;
+
+CREATE INDEX idx_term_stats_frequency_text ON term_stats (stats_project_id, stats_frequency DESC, stats_term_text);
+
+VACUUM ANALYZE;
+
+-- the most frequent term, and a rare one
+SELECT stats_term_id AS frequent_term FROM term_stats WHERE stats_project_id = 1 ORDER BY stats_frequency DESC LIMIT 1 \gset
+SELECT stats_term_id AS rare_term FROM term_stats WHERE stats_project_id = 1 ORDER BY stats_frequency, stats_term_id LIMIT 1 \gset
+
+-- runs a query once to warm the cache, then several times with EXPLAIN
+-- ANALYZE, recording the median execution time
+CREATE TABLE benchmark_results (query text, phase text, execution_ms numeric);
+
+CREATE FUNCTION run_benchmark(query_name text, phase text, query text) RETURNS void AS $$
+DECLARE
+  plan json;
+  timings numeric[] := '{}';
+BEGIN
+  EXECUTE query;
+  FOR i IN 1..5 LOOP
+    EXECUTE 'EXPLAIN (ANALYZE, FORMAT JSON) ' || query INTO plan;
+    timings := timings || (plan->0->>'Execution Time')::numeric;
+  END LOOP;
+  INSERT INTO benchmark_results
+  SELECT query_name, phase, percentile_cont(0.5) WITHIN GROUP (ORDER BY t) FROM unnest(timings) t;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION run_benchmarks(phase text, frequent_term integer, rare_term integer) RETURNS void AS $$
+DECLARE
+  benchmark_term_id integer;
+  term_kind text;
+BEGIN
+  FOR benchmark_term_id, term_kind IN VALUES (frequent_term, 'frequent'), (rare_term, 'rare') LOOP
+    PERFORM run_benchmark('getParents (' || term_kind || ')', phase, format(
+        'SELECT term_id, stats_frequency FROM term'
+        ' INNER JOIN term_stats ON stats_term_id = term_id'
+        ' INNER JOIN term_expansions ON term_id = termexp_term_id'
+        ' WHERE stats_project_id = 1 AND termexp_expansion_id = %s ORDER BY term_text', benchmark_term_id));
+    PERFORM run_benchmark('getExpansions (' || term_kind || ')', phase, format(
+        'SELECT term_id, stats_frequency FROM term'
+        ' INNER JOIN term_stats ON stats_term_id = term_id'
+        ' INNER JOIN term_expansions ON term_id = termexp_expansion_id'
+        ' WHERE stats_project_id = 1 AND termexp_term_id = %s ORDER BY term_text', benchmark_term_id));
+    PERFORM run_benchmark('getHeads (' || term_kind || ')', phase, format(
+        'SELECT term_id, stats_frequency FROM term'
+        ' INNER JOIN term_stats ON stats_term_id = term_id'
+        ' INNER JOIN term_heads ON term_id = termhead_head_id'
+        ' WHERE stats_project_id = 1 AND termhead_term_id = %s ORDER BY term_text', benchmark_term_id));
+    PERFORM run_benchmark('getContexts (' || term_kind || ')', phase, format(
+        'SELECT context_id, context_text FROM context'
+        ' INNER JOIN term ON context_term_id = term_id'
+        ' WHERE context_project_id = 1 AND term_id = %s ORDER BY context_id', benchmark_term_id));
+    PERFORM run_benchmark('updateTermStatsCounts with linked terms (' || term_kind || ')', phase, format(
+        'SELECT stats_term_id FROM term_stats s WHERE s.stats_project_id = 1 AND (s.stats_term_id IN (%1$s)'
+        ' OR s.stats_term_id IN (SELECT termexp_term_id FROM term_expansions WHERE termexp_expansion_id IN (%1$s))'
+        ' OR s.stats_term_id IN (SELECT termhead_term_id FROM term_heads WHERE termhead_head_id IN (%1$s)))', benchmark_term_id));
+    PERFORM run_benchmark('term_stats by term (' || term_kind || ')', phase, format(
+        'SELECT * FROM term_stats WHERE stats_term_id = %s', benchmark_term_id));
+  END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT run_benchmarks('before', :frequent_term, :rare_term);
+
+CREATE INDEX idx_termexp_expansion_term ON term_expansions (termexp_expansion_id, termexp_term_id);
+CREATE INDEX idx_termhead_head_term ON term_heads (termhead_head_id, termhead_term_id);
+CREATE INDEX idx_context_term ON context (context_term_id, context_project_id, context_id);
+CREATE INDEX idx_term_stats_term ON term_stats (stats_term_id);
+VACUUM ANALYZE;
+
+SELECT run_benchmarks('after', :frequent_term, :rare_term);
+
+SELECT b.query, b.execution_ms AS before_ms, a.execution_ms AS after_ms
+FROM benchmark_results b
+INNER JOIN benchmark_results a ON a.query = b.query AND a.phase = 'after'
+WHERE b.phase = 'before'
+ORDER BY b.query;
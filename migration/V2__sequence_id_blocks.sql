@@ -0,0 +1,5 @@
+-- Term and context ids are reserved by the application in blocks the size of
+-- the sequence increment: a call to nextval returning n reserves the ids
+-- n to n + increment - 1, which are then handed out from memory.
+ALTER SEQUENCE seq_term_id INCREMENT BY 1000;
+ALTER SEQUENCE seq_context_id INCREMENT BY 1000;
@@ -0,0 +1,39 @@
+-- Per-project term statistics, maintained by the application whenever
+-- contexts or head/expansion links are added, so that reads don't need to
+-- aggregate the context table.
+-- A term's head and expansion counts only include heads and expansions which
+-- also have contexts in the same project.
+CREATE TABLE term_stats (
+  stats_project_id integer NOT NULL,
+  stats_term_id integer NOT NULL,
+  stats_frequency integer DEFAULT 0 NOT NULL,
+  stats_head_count integer DEFAULT 0 NOT NULL,
+  stats_expansion_count integer DEFAULT 0 NOT NULL,
+  stats_lexical_words smallint DEFAULT 0 NOT NULL,
+  CONSTRAINT pk_term_stats PRIMARY KEY (stats_project_id, stats_term_id),
+  CONSTRAINT fk_term_stats_project FOREIGN KEY (stats_project_id) REFERENCES project(project_id),
+  CONSTRAINT fk_term_stats_term FOREIGN KEY (stats_term_id) REFERENCES term(term_id)
+);
+
+CREATE INDEX idx_term_stats_frequency ON term_stats (stats_project_id, stats_frequency DESC);
+
+-- Needed to find the terms whose counts change when a term first appears in
+-- a project.
+CREATE INDEX idx_termexp_expansion ON term_expansions (termexp_expansion_id);
+CREATE INDEX idx_termhead_head ON term_heads (termhead_head_id);
+
+INSERT INTO term_stats (stats_project_id, stats_term_id, stats_frequency, stats_lexical_words)
+SELECT context_project_id, term_id, count(context_id), term_lexical_words
+FROM term
+INNER JOIN context ON context_term_id = term_id
+GROUP BY context_project_id, term_id, term_lexical_words;
+
+UPDATE term_stats s
+SET stats_expansion_count = (
+  SELECT count(*) FROM term_expansions
+  INNER JOIN term_stats e ON e.stats_term_id = termexp_expansion_id AND e.stats_project_id = s.stats_project_id
+  WHERE termexp_term_id = s.stats_term_id),
+stats_head_count = (
+  SELECT count(*) FROM term_heads
+  INNER JOIN term_stats h ON h.stats_term_id = termhead_head_id AND h.stats_project_id = s.stats_project_id
+  WHERE termhead_term_id = s.stats_term_id);
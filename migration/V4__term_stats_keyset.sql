@@ -0,0 +1,10 @@
+-- Terms are listed by descending frequency, then by text. Copying the text
+-- into term_stats lets the whole ordering, and keyset pagination on it, be
+-- served by a single index.
+ALTER TABLE term_stats ADD COLUMN stats_term_text text;
+
+UPDATE term_stats SET stats_term_text = term_text
+FROM term WHERE term_id = stats_term_id;
+
+DROP INDEX idx_term_stats_frequency;
+CREATE INDEX idx_term_stats_frequency_text ON term_stats (stats_project_id, stats_frequency DESC, stats_term_text);
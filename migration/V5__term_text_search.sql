@@ -0,0 +1,8 @@
+-- Indexes for searching terms by text.
+-- text_pattern_ops supports prefix searches (LIKE 'abc%') whatever the
+-- database collation, while the trigram index supports substring searches
+-- (LIKE '%abc%') and similarity searches (term_text % 'abc').
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_term_text_pattern ON term (term_text text_pattern_ops);
+CREATE INDEX idx_term_text_trgm ON term USING gin (term_text gin_trgm_ops);
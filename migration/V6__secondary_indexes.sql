@@ -0,0 +1,17 @@
+-- Secondary indexes for the access paths used by PostGresTerminologyBase.
+-- The relation indexes include both columns so that lookups from the second
+-- column of each primary key can be answered by an index-only scan.
+
+-- getParents, and recounting the terms which have a given term as expansion
+DROP INDEX idx_termexp_expansion;
+CREATE INDEX idx_termexp_expansion_term ON term_expansions (termexp_expansion_id, termexp_term_id);
+
+-- recounting the terms which have a given term as head
+DROP INDEX idx_termhead_head;
+CREATE INDEX idx_termhead_head_term ON term_heads (termhead_head_id, termhead_term_id);
+
+-- getContexts: a term's contexts in a project, in order
+CREATE INDEX idx_context_term ON context (context_term_id, context_project_id, context_id);
+
+-- updating a term's statistics in every project
+CREATE INDEX idx_term_stats_term ON term_stats (stats_term_id);
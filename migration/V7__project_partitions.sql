@@ -0,0 +1,93 @@
+-- Contexts and term statistics are list-partitioned by project, so that a
+-- large project doesn't slow down queries on the others, and a project can be
+-- cleared or dropped by truncating or dropping its partitions rather than
+-- deleting its rows one by one.
+-- Requires PostgreSQL 11 or later.
+
+-- Partitions are named after the project id, and are created by the
+-- application when a project is created.
+CREATE FUNCTION create_project_partitions(p_project_id integer) RETURNS void AS $$
+BEGIN
+  EXECUTE format('CREATE TABLE IF NOT EXISTS context_p%s PARTITION OF context FOR VALUES IN (%s)', p_project_id, p_project_id);
+  EXECUTE format('CREATE TABLE IF NOT EXISTS term_stats_p%s PARTITION OF term_stats FOR VALUES IN (%s)', p_project_id, p_project_id);
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION truncate_project_partitions(p_project_id integer) RETURNS void AS $$
+BEGIN
+  EXECUTE format('TRUNCATE TABLE context_p%s, term_stats_p%s', p_project_id, p_project_id);
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION drop_project_partitions(p_project_id integer) RETURNS void AS $$
+BEGIN
+  EXECUTE format('DROP TABLE IF EXISTS context_p%s, term_stats_p%s', p_project_id, p_project_id);
+END;
+$$ LANGUAGE plpgsql;
+
+ALTER TABLE context RENAME TO context_old;
+ALTER TABLE context_old RENAME CONSTRAINT pk_context TO pk_context_old;
+ALTER TABLE context_old RENAME CONSTRAINT uk_context TO uk_context_old;
+DROP INDEX idx_context_term;
+
+ALTER TABLE term_stats RENAME TO term_stats_old;
+ALTER TABLE term_stats_old RENAME CONSTRAINT pk_term_stats TO pk_term_stats_old;
+DROP INDEX idx_term_stats_frequency_text;
+DROP INDEX idx_term_stats_term;
+
+-- The primary key of a partitioned table must include the partition key.
+CREATE TABLE context (
+  context_id integer NOT NULL,
+  context_start_row integer,
+  context_start_column integer,
+  context_text text NOT NULL,
+  context_file_id integer NOT NULL,
+  context_term_id integer NOT NULL,
+  context_end_row integer,
+  context_end_column integer,
+  context_project_id integer NOT NULL,
+  CONSTRAINT pk_context PRIMARY KEY (context_project_id, context_id),
+  CONSTRAINT uk_context UNIQUE (context_project_id, context_file_id, context_term_id, context_start_row, context_start_column),
+  CONSTRAINT fk_context_file FOREIGN KEY (context_file_id) REFERENCES file(file_id),
+  CONSTRAINT fk_context_term FOREIGN KEY (context_term_id) REFERENCES term(term_id),
+  CONSTRAINT fk_context_project FOREIGN KEY (context_project_id) REFERENCES project(project_id)
+) PARTITION BY LIST (context_project_id);
+
+-- getContexts: within a partition, the project is already fixed
+CREATE INDEX idx_context_term ON context (context_term_id, context_id);
+
+CREATE TABLE term_stats (
+  stats_project_id integer NOT NULL,
+  stats_term_id integer NOT NULL,
+  stats_frequency integer DEFAULT 0 NOT NULL,
+  stats_head_count integer DEFAULT 0 NOT NULL,
+  stats_expansion_count integer DEFAULT 0 NOT NULL,
+  stats_lexical_words smallint DEFAULT 0 NOT NULL,
+  stats_term_text text,
+  CONSTRAINT pk_term_stats PRIMARY KEY (stats_project_id, stats_term_id),
+  CONSTRAINT fk_term_stats_project FOREIGN KEY (stats_project_id) REFERENCES project(project_id),
+  CONSTRAINT fk_term_stats_term FOREIGN KEY (stats_term_id) REFERENCES term(term_id)
+) PARTITION BY LIST (stats_project_id);
+
+CREATE INDEX idx_term_stats_frequency_text ON term_stats (stats_project_id, stats_frequency DESC, stats_term_text);
+CREATE INDEX idx_term_stats_term ON term_stats (stats_term_id);
+
+SELECT create_project_partitions(project_id) FROM project;
+
+INSERT INTO context (context_id, context_start_row, context_start_column, context_text, context_file_id, context_term_id,
+  context_end_row, context_end_column, context_project_id)
+SELECT context_id, context_start_row, context_start_column, context_text, context_file_id, context_term_id,
+  context_end_row, context_end_column, context_project_id
+FROM context_old;
+
+INSERT INTO term_stats (stats_project_id, stats_term_id, stats_frequency, stats_head_count, stats_expansion_count,
+  stats_lexical_words, stats_term_text)
+SELECT stats_project_id, stats_term_id, stats_frequency, stats_head_count, stats_expansion_count,
+  stats_lexical_words, stats_term_text
+FROM term_stats_old;
+
+DROP TABLE context_old;
+DROP TABLE term_stats_old;
+
+ANALYZE context;
+ANALYZE term_stats;
@@ -0,0 +1,112 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology.extractor;
+
+import com.joliciel.talismane.posTagger.PosTaggedToken;
+import com.joliciel.talismane.terminology.CodedSentence;
+import com.joliciel.talismane.terminology.Expansion;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The expansions calculated so far for each token of a sentence, indexed by
+ * token index, along with the stack used to visit the tokens in dependency
+ * order. The arrays are kept from one sentence to the next, and only grow when
+ * a longer sentence comes along.
+ * 
+ * Not thread-safe: each extractor should have its own table.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+final class ExpansionTable {
+  private CodedSentence sentence = null;
+  private int size = 0;
+
+  private List<?>[] expansions = new List<?>[0];
+  private boolean[] visited = new boolean[0];
+  private PosTaggedToken[] stack = new PosTaggedToken[0];
+  private int stackSize = 0;
+
+  /**
+   * Get ready to calculate expansions for a given sentence. If the sentence
+   * is the one the table currently holds, the expansions already calculated
+   * are kept.
+   */
+  void prepare(CodedSentence sentence) {
+    if (this.sentence == sentence)
+      return;
+
+    int newSize = sentence.size();
+    if (newSize > expansions.length) {
+      expansions = new List<?>[newSize];
+      visited = new boolean[newSize];
+      stack = new PosTaggedToken[newSize];
+    } else {
+      Arrays.fill(expansions, 0, size, null);
+      Arrays.fill(visited, 0, size, false);
+    }
+    stackSize = 0;
+    this.size = newSize;
+    this.sentence = sentence;
+  }
+
+  /**
+   * The expansions headed by a given token, or null if they haven't been
+   * calculated yet.
+   */
+  @SuppressWarnings("unchecked")
+  List<Expansion> get(PosTaggedToken posTaggedToken) {
+    return (List<Expansion>) expansions[posTaggedToken.getIndex()];
+  }
+
+  void put(PosTaggedToken posTaggedToken, List<Expansion> tokenExpansions) {
+    expansions[posTaggedToken.getIndex()] = tokenExpansions;
+  }
+
+  /**
+   * Mark a token as visited, returning false if it already was.
+   */
+  boolean visit(PosTaggedToken posTaggedToken) {
+    int index = posTaggedToken.getIndex();
+    if (visited[index])
+      return false;
+    visited[index] = true;
+    return true;
+  }
+
+  void push(PosTaggedToken posTaggedToken) {
+    stack[stackSize++] = posTaggedToken;
+  }
+
+  PosTaggedToken peek() {
+    return stack[stackSize - 1];
+  }
+
+  PosTaggedToken pop() {
+    PosTaggedToken posTaggedToken = stack[--stackSize];
+    stack[stackSize] = null;
+    return posTaggedToken;
+  }
+
+  boolean isStackEmpty() {
+    return stackSize == 0;
+  }
+}
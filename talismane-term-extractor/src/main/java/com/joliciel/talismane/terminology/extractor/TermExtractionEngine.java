@@ -21,9 +21,10 @@ package com.joliciel.talismane.terminology.extractor;
 import com.joliciel.talismane.parser.DependencyNode;
 import com.joliciel.talismane.parser.ParseConfiguration;
 import com.joliciel.talismane.posTagger.PosTaggedToken;
+import com.joliciel.talismane.terminology.CodedSentence;
 import com.joliciel.talismane.terminology.Expansion;
-import com.typesafe.config.Config;
-import com.typesafe.config.ConfigFactory;
+import com.joliciel.talismane.terminology.ExpansionSpan;
+import com.joliciel.talismane.terminology.LanguageProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,176 +47,206 @@ public class TermExtractionEngine {
   
   private final String sessionId;
 
+  private final LanguageProfile profile;
   private final Set<String> zeroDepthLabels;
-  private final Set<String> termStopTags;
-  private final Set<String> nonStandaloneTags;
-  private final Set<String> nonStandaloneIfHasDependents;
-  private final Set<String> nonTopLevelLabels;
 
   
-  TermExtractionEngine(String sessionId, int maxDepth) throws ReflectiveOperationException {
-    this.sessionId = sessionId;
+  TermExtractionEngine(String sessionId, int maxDepth) {
+    this(sessionId, maxDepth, LanguageProfile.getInstance());
+  }
 
-    Config config = ConfigFactory.load().getConfig("talismane.terminology");
+  TermExtractionEngine(String sessionId, int maxDepth, LanguageProfile profile) {
+    this.sessionId = sessionId;
+    this.profile = profile;
 
-    String language = config.getString("language");
-    Config languageConfig = config.getConfig(language);
-    
-    this.nonStandaloneIfHasDependents = new HashSet<>(languageConfig.getStringList("non-standalone-if-has-dependents"));
-    this.nonStandaloneTags = new HashSet<>(languageConfig.getStringList("non-standalone-tags"));
-    this.nonTopLevelLabels = new HashSet<>(languageConfig.getStringList("non-top-level-labels"));
-    this.termStopTags = new HashSet<>(languageConfig.getStringList("term-stop-tags"));
-    this.zeroDepthLabels = new HashSet<>(languageConfig.getStringList("zero-depth-labels"));
+    this.zeroDepthLabels = profile.getZeroDepthLabels();
 
     this.maxDepth = maxDepth;
   }
 
   /**
-   * Get all expansions for this node recursively. Note: we assume in here
-   * that coordinated structures are first-conjunct governed.
+   * Get all expansions for this node, which is taken to be top-level. Note: we
+   * assume in here that coordinated structures are first-conjunct governed.
    */
-  List<Expansion> getExpansions(PosTaggedToken posTaggedToken, ParseConfiguration parseConfiguration, int depth,
-                                Map<PosTaggedToken, List<Expansion>> expansionsPerNoun) {
-    List<Expansion> expansions;
-
-    List<Expansion> myExpansions = expansionsPerNoun.get(posTaggedToken);
-    if (myExpansions == null) {
-      myExpansions = new ArrayList<>();
-
-      List<PosTaggedToken> dependents = parseConfiguration.getDependents(posTaggedToken);
-
-      DependencyNode kernel = parseConfiguration.getDetachedDependencyNode(posTaggedToken);
+  List<Expansion> getExpansions(PosTaggedToken posTaggedToken, ParseConfiguration parseConfiguration) {
+    return this.getExpansions(posTaggedToken, profile.code(parseConfiguration), new ExpansionTable());
+  }
 
-      // only add the kernel on its own if it meets certain criteria
-      String posTagCode = posTaggedToken.getTag().getCode();
-      int numDependents = dependents.size();
-      if (!nonStandaloneTags.contains(posTagCode) && !(numDependents > 0 && nonStandaloneIfHasDependents.contains(posTagCode))) {
-        myExpansions.add(new Expansion(kernel, sessionId));
-      }
+  /**
+   * Like {@link #getExpansions(PosTaggedToken, ParseConfiguration)}, for a
+   * sentence which has already been coded against the language profile.
+   * 
+   * @param table
+   *          the expansions already calculated for the tokens of this
+   *          sentence, to which any new ones are added
+   */
+  List<Expansion> getExpansions(PosTaggedToken posTaggedToken, CodedSentence sentence, ExpansionTable table) {
+    table.prepare(sentence);
+    this.calculateExpansions(posTaggedToken, sentence, table);
 
-      // add the various dependents one at a time, until we hit a
-      // dependent that shouldn't be included
-      List<PosTaggedToken> leftHandDependents = new ArrayList<PosTaggedToken>();
-      List<PosTaggedToken> rightHandDependents = new ArrayList<PosTaggedToken>();
-      List<List<Expansion>> leftHandExpansionList = new ArrayList<List<Expansion>>();
-      List<List<Expansion>> rightHandExpansionList = new ArrayList<List<Expansion>>();
-
-      for (PosTaggedToken dependent : dependents) {
-        // stop when we hit conjugated verbs or pronouns
-        // current assumption is these will always be "to the right" of
-        // the term candidate
-        if (termStopTags.contains(posTagCode)) {
+    // since it's top-level, we don't want the coordinating structure, nor
+    // the determinant
+    List<Expansion> expansions = new ArrayList<Expansion>();
+    for (Expansion expansion : table.get(posTaggedToken)) {
+      boolean include = true;
+      for (DependencyNode child : expansion.getNode().getDependents()) {
+        if (sentence.isNonTopLevel(child)) {
+          include = false;
           break;
         }
+      }
+      if (include)
+        expansions.add(expansion);
+    }
+
+    return expansions;
+  }
 
-        // recursively get the expansions for each dependent, and store
-        // them either to the left or to the right
-        List<Expansion> dependentExpansions = this.getExpansions(dependent, parseConfiguration, depth + 1, expansionsPerNoun);
-
-        if (dependentExpansions.size() > 0) {
-          if (dependent.getIndex() < posTaggedToken.getIndex()) {
-            leftHandDependents.add(0, dependent);
-            leftHandExpansionList.add(0, dependentExpansions);
-          } else {
-            rightHandDependents.add(dependent);
-            rightHandExpansionList.add(dependentExpansions);
+  /**
+   * Calculate the expansions of a token and of all the tokens it governs,
+   * visiting dependents before their heads, so that each token's expansions
+   * can be built from its dependents' expansions.
+   */
+  private void calculateExpansions(PosTaggedToken posTaggedToken, CodedSentence sentence, ExpansionTable table) {
+    if (table.get(posTaggedToken) != null)
+      return;
+
+    ParseConfiguration parseConfiguration = sentence.getParseConfiguration();
+    table.push(posTaggedToken);
+    while (!table.isStackEmpty()) {
+      PosTaggedToken current = table.peek();
+      if (table.visit(current)) {
+        // stop when we hit conjugated verbs or pronouns: their dependents
+        // are never included
+        if (!sentence.isTermStop(current)) {
+          for (PosTaggedToken dependent : parseConfiguration.getDependents(current)) {
+            if (table.get(dependent) == null)
+              table.push(dependent);
           }
         }
+      } else {
+        table.pop();
+        table.put(current, this.getTokenExpansions(current, sentence, table));
       }
+    }
+  }
 
-      // add expansions from left and right side individually
-      for (int i = 0; i < 2; i++) {
-        List<List<Expansion>> oneSideExpansionList = leftHandExpansionList;
-        if (i == 1)
-          oneSideExpansionList = rightHandExpansionList;
-        DependencyNode currentNode = kernel.cloneNode();
-        DependencyNode biggestNode = null;
-        for (List<Expansion> dependentExpansions : oneSideExpansionList) {
-          for (Expansion dependentExpansion : dependentExpansions) {
-            DependencyNode dependentNode = dependentExpansion.getNode();
-            DependencyNode newNode = currentNode.cloneNode();
-            newNode.addDependent(dependentNode);
-
-            if (newNode.isContiguous()) {
-              int perceivedDepth = newNode.getPerceivedDepth(this.zeroDepthLabels);
-
-              if (perceivedDepth <= this.getMaxDepth()) {
-                Expansion expansion = new Expansion(newNode, sessionId);
-                myExpansions.add(expansion);
-              }
+  /**
+   * Get all expansions headed by a token, whose dependents' expansions have
+   * already been calculated, including those which aren't valid top-level.
+   */
+  private List<Expansion> getTokenExpansions(PosTaggedToken posTaggedToken, CodedSentence sentence, ExpansionTable table) {
+    ParseConfiguration parseConfiguration = sentence.getParseConfiguration();
+    List<Expansion> myExpansions = new ArrayList<>();
 
-              biggestNode = newNode;
-            }
-          }
-          if (biggestNode == null)
-            break;
+    List<PosTaggedToken> dependents = parseConfiguration.getDependents(posTaggedToken);
 
-          currentNode = biggestNode;
+    DependencyNode kernel = parseConfiguration.getDetachedDependencyNode(posTaggedToken);
+    Candidate kernelCandidate = new Candidate(kernel, posTaggedToken.getIndex(), kernel.getPerceivedDepth(zeroDepthLabels));
+
+    // only add the kernel on its own if it meets certain criteria
+    int numDependents = dependents.size();
+    if (!sentence.isNonStandalone(posTaggedToken) && !(numDependents > 0 && sentence.isNonStandaloneIfHasDependents(posTaggedToken))) {
+      myExpansions.add(new Expansion(kernel, sessionId, sentence, kernelCandidate.getSpan()));
+    }
+
+    // add the various dependents one at a time, until we hit a
+    // dependent that shouldn't be included
+    List<PosTaggedToken> leftHandDependents = new ArrayList<PosTaggedToken>();
+    List<PosTaggedToken> rightHandDependents = new ArrayList<PosTaggedToken>();
+    List<List<Expansion>> leftHandExpansionList = new ArrayList<List<Expansion>>();
+    List<List<Expansion>> rightHandExpansionList = new ArrayList<List<Expansion>>();
+
+    for (PosTaggedToken dependent : dependents) {
+      // stop when we hit conjugated verbs or pronouns
+      // current assumption is these will always be "to the right" of
+      // the term candidate
+      if (sentence.isTermStop(posTaggedToken)) {
+        break;
+      }
+
+      // get the expansions already calculated for each dependent, and
+      // store them either to the left or to the right
+      List<Expansion> dependentExpansions = table.get(dependent);
+
+      if (dependentExpansions.size() > 0) {
+        if (dependent.getIndex() < posTaggedToken.getIndex()) {
+          leftHandDependents.add(0, dependent);
+          leftHandExpansionList.add(0, dependentExpansions);
+        } else {
+          rightHandDependents.add(dependent);
+          rightHandExpansionList.add(dependentExpansions);
         }
       }
+    }
 
-      // add dependents from both sides in combination
-      if (leftHandExpansionList.size() > 0 && rightHandExpansionList.size() > 0) {
-        // have both right and left-hand expansions
-        DependencyNode currentLeftNode = kernel.cloneNode();
-        DependencyNode biggestLeftNode = null;
-        for (List<Expansion> leftExpansions : leftHandExpansionList) {
-          for (Expansion leftExpansion : leftExpansions) {
-            DependencyNode leftNode = leftExpansion.getNode();
-            DependencyNode currentNode = currentLeftNode.cloneNode();
-            currentNode.addDependent(leftNode);
-            DependencyNode biggestRightNode = null;
-            for (List<Expansion> rightExpansions : rightHandExpansionList) {
-              for (Expansion rightExpansion : rightExpansions) {
-                DependencyNode rightNode = rightExpansion.getNode();
-                DependencyNode newNode = currentNode.cloneNode();
-                newNode.addDependent(rightNode);
-
-                if (newNode.isContiguous()) {
-                  int perceivedDepth = newNode.getPerceivedDepth(zeroDepthLabels);
-                  if (perceivedDepth <= this.getMaxDepth()) {
-                    Expansion expansion = new Expansion(newNode, sessionId);
-                    myExpansions.add(expansion);
-                  }
-                  biggestRightNode = rightExpansion.getNode();
-                }
-              }
+    // Combinations are only tried out as candidates, and a node is only
+    // built for those which are contiguous and shallow enough.
 
-              if (biggestRightNode == null)
-                break;
-              currentNode = currentNode.cloneNode();
-              currentNode.addDependent(biggestRightNode);
+    // add expansions from left and right side individually
+    for (int i = 0; i < 2; i++) {
+      List<List<Expansion>> oneSideExpansionList = leftHandExpansionList;
+      if (i == 1)
+        oneSideExpansionList = rightHandExpansionList;
+      Candidate currentCandidate = kernelCandidate;
+      Candidate biggestCandidate = null;
+      for (List<Expansion> dependentExpansions : oneSideExpansionList) {
+        for (Expansion dependentExpansion : dependentExpansions) {
+          Candidate newCandidate = currentCandidate.attach(dependentExpansion);
+
+          if (newCandidate.isContiguous()) {
+            if (newCandidate.getPerceivedDepth() <= this.getMaxDepth()) {
+              myExpansions.add(newCandidate.materialise(sessionId, sentence));
             }
-            biggestLeftNode = leftExpansion.getNode();
+
+            biggestCandidate = newCandidate;
           }
-          currentLeftNode = currentLeftNode.cloneNode();
-          currentLeftNode.addDependent(biggestLeftNode);
         }
+        if (biggestCandidate == null)
+          break;
+
+        currentCandidate = biggestCandidate;
       }
+    }
+
+    // add dependents from both sides in combination
+    if (leftHandExpansionList.size() > 0 && rightHandExpansionList.size() > 0) {
+      // have both right and left-hand expansions
+      Candidate currentLeftCandidate = kernelCandidate;
+      Expansion biggestLeftExpansion = null;
+      for (List<Expansion> leftExpansions : leftHandExpansionList) {
+        for (Expansion leftExpansion : leftExpansions) {
+          Candidate currentCandidate = currentLeftCandidate.attach(leftExpansion);
+          Expansion biggestRightExpansion = null;
+          Expansion attachedRightExpansion = null;
+          for (List<Expansion> rightExpansions : rightHandExpansionList) {
+            for (Expansion rightExpansion : rightExpansions) {
+              Candidate newCandidate = currentCandidate.attach(rightExpansion);
 
-      expansionsPerNoun.put(posTaggedToken, myExpansions);
-    } // expansions have not yet been calculated for this token
-
-    if (depth == 0) {
-      // if it's top-level, we don't want the coordinating structure, nor
-      // the determinant
-      expansions = new ArrayList<Expansion>();
-      for (Expansion expansion : myExpansions) {
-        boolean include = true;
-        for (DependencyNode child : expansion.getNode().getDependents()) {
-          if (this.nonTopLevelLabels.contains(child.getLabel())) {
-            include = false;
-            break;
+              if (newCandidate.isContiguous()) {
+                if (newCandidate.getPerceivedDepth() <= this.getMaxDepth()) {
+                  myExpansions.add(newCandidate.materialise(sessionId, sentence));
+                }
+                biggestRightExpansion = rightExpansion;
+              }
+            }
+
+            if (biggestRightExpansion == null)
+              break;
+            // a dependent which is already attached doesn't change the
+            // candidate
+            if (biggestRightExpansion != attachedRightExpansion) {
+              currentCandidate = currentCandidate.attach(biggestRightExpansion);
+              attachedRightExpansion = biggestRightExpansion;
+            }
           }
+          biggestLeftExpansion = leftExpansion;
         }
-        if (include)
-          expansions.add(expansion);
+        currentLeftCandidate = currentLeftCandidate.attach(biggestLeftExpansion);
       }
-    } else {
-      expansions = myExpansions;
     }
 
-    return expansions;
+    return myExpansions;
   }
 
   /**
@@ -227,4 +258,66 @@ public class TermExtractionEngine {
   public int getMaxDepth() {
     return maxDepth;
   }
+
+  /**
+   * A candidate expansion: a kernel with a number of dependent expansions
+   * attached to it. Its span and perceived depth are calculated from those of
+   * its parts, and the corresponding node is only built on request.
+   */
+  private static final class Candidate {
+    private final DependencyNode kernel;
+    private final int kernelDepth;
+    private final Candidate base;
+    private final Expansion dependent;
+    private final int firstIndex;
+    private final int lastIndex;
+    private final int tokenCount;
+    private final int dependentDepth;
+
+    Candidate(DependencyNode kernel, int kernelIndex, int kernelDepth) {
+      this(kernel, kernelDepth, null, null, kernelIndex, kernelIndex, 1, 0);
+    }
+
+    private Candidate(DependencyNode kernel, int kernelDepth, Candidate base, Expansion dependent, int firstIndex, int lastIndex, int tokenCount,
+        int dependentDepth) {
+      this.kernel = kernel;
+      this.kernelDepth = kernelDepth;
+      this.base = base;
+      this.dependent = dependent;
+      this.firstIndex = firstIndex;
+      this.lastIndex = lastIndex;
+      this.tokenCount = tokenCount;
+      this.dependentDepth = dependentDepth;
+    }
+
+    /**
+     * A new candidate, with a dependent expansion attached to the kernel. The
+     * dependent is assumed to be governed by the kernel, so that its tokens
+     * don't overlap with those already attached.
+     */
+    Candidate attach(Expansion dependentExpansion) {
+      ExpansionSpan span = dependentExpansion.getSpan();
+      return new Candidate(kernel, kernelDepth, this, dependentExpansion, Math.min(firstIndex, span.getFirstIndex()),
+          Math.max(lastIndex, span.getLastIndex()), tokenCount + span.getTokenCount(), Math.max(dependentDepth, span.getPerceivedDepth()));
+    }
+
+    boolean isContiguous() {
+      return lastIndex - firstIndex + 1 == tokenCount;
+    }
+
+    int getPerceivedDepth() {
+      return kernelDepth + dependentDepth;
+    }
+
+    ExpansionSpan getSpan() {
+      return new ExpansionSpan(firstIndex, lastIndex, tokenCount, this.getPerceivedDepth());
+    }
+
+    Expansion materialise(String sessionId, CodedSentence sentence) {
+      DependencyNode node = kernel.cloneNode();
+      for (Candidate candidate = this; candidate.base != null; candidate = candidate.base)
+        node.addDependent(candidate.dependent.getNode().cloneNode());
+      return new Expansion(node, sessionId, sentence, this.getSpan());
+    }
+  }
 }
@@ -23,9 +23,10 @@ import com.joliciel.talismane.parser.DependencyNode;
 import com.joliciel.talismane.parser.ParseConfiguration;
 import com.joliciel.talismane.parser.output.ParseConfigurationProcessor;
 import com.joliciel.talismane.posTagger.PosTaggedToken;
-import com.joliciel.talismane.terminology.Context;
+import com.joliciel.talismane.terminology.CodedSentence;
 import com.joliciel.talismane.terminology.Expansion;
-import com.joliciel.talismane.terminology.Term;
+import com.joliciel.talismane.terminology.LanguageProfile;
+import com.joliciel.talismane.terminology.LexiconCache;
 import com.joliciel.talismane.terminology.TerminologyBase;
 import com.joliciel.talismane.terminology.postgres.PostGresTerminologyBase;
 import com.joliciel.talismane.tokeniser.Token;
@@ -49,10 +50,11 @@ public class TermExtractor implements ParseConfigurationProcessor {
 
   @Override
   public void close() throws IOException {
-
+    writeBuffer.flush();
+    if (terminologyBase instanceof PostGresTerminologyBase)
+      ((PostGresTerminologyBase) terminologyBase).close();
   }
 
-  @SuppressWarnings("unused")
   private static final Logger LOG = LoggerFactory.getLogger(TermExtractor.class);
   
   private final int maxDepth;
@@ -64,62 +66,68 @@ public class TermExtractor implements ParseConfigurationProcessor {
 
   private final List<TermObserver> termObservers;
   
-  private final Set<String> nominalTags;
+  private final LanguageProfile profile;
 
   private final TermExtractionEngine engine;
+
+  private final ExpansionTable expansionTable = new ExpansionTable();
+
+  private final TermWriteBuffer writeBuffer;
   
   public TermExtractor(String sessionId) throws ReflectiveOperationException {
-    this(sessionId, ConfigFactory.load().getConfig("talismane.terminology").getInt("max-depth"));
-  }
-
-  TermExtractor(String sessionId, int maxDepth) throws ReflectiveOperationException {
     this.sessionId = sessionId;
 
     Config config = ConfigFactory.load().getConfig("talismane.terminology");
     String projectCode = config.getString("project-code");
     this.terminologyBase = new PostGresTerminologyBase(projectCode);
 
-    String language = config.getString("language");
-    Config languageConfig = config.getConfig(language);
+    this.profile = LanguageProfile.getInstance(config.getString("language"));
 
-    this.nominalTags = new HashSet<>(languageConfig.getStringList("nominal-tags"));
+    this.maxDepth = config.getInt("max-depth");
 
-    this.maxDepth = maxDepth;
-
-    this.termObservers = TermObserver.getObservers();
+    this.termObservers = TermObserver.getObservers(config);
     
-    this.engine = new TermExtractionEngine(sessionId, maxDepth);
+    this.engine = new TermExtractionEngine(sessionId, maxDepth, profile);
+
+    Config writeBufferConfig = config.getConfig("write-buffer");
+    this.writeBuffer = new TermWriteBuffer(terminologyBase, termObservers, writeBufferConfig.getInt("max-sentences"),
+        writeBufferConfig.getDuration("max-delay"), writeBufferConfig.getInt("max-retries"));
   }
 
   @Override
   public void onNextParseConfiguration(ParseConfiguration parseConfiguration) throws TalismaneException {
-    for (TermObserver termObserver : termObservers) {
-      termObserver.onNewContext(parseConfiguration.getPosTagSequence().getTokenSequence().getSentence().getText().toString());
-    }
+    writeBuffer.onNewSentence(parseConfiguration.getPosTagSequence().getTokenSequence().getSentence().getText().toString());
+
+    CodedSentence sentence = profile.code(parseConfiguration);
 
     // find all nouns
     List<PosTaggedToken> nouns = new ArrayList<PosTaggedToken>();
     for (PosTaggedToken posTaggedToken : parseConfiguration.getPosTagSequence()) {
-      if (nominalTags.contains(posTaggedToken.getTag().getCode())) {
+      if (sentence.isNominal(posTaggedToken)) {
         nouns.add(posTaggedToken);
       }
     }
 
-    Map<PosTaggedToken, List<Expansion>> expansionsPerNoun = new HashMap<PosTaggedToken, List<Expansion>>();
     for (PosTaggedToken noun : nouns) {
-      this.getExpansionStrings(noun, parseConfiguration, 0, expansionsPerNoun);
+      this.getExpansionStrings(noun, sentence);
     } // next noun head
+
+    if (writeBuffer.isFlushRequired())
+      writeBuffer.flush();
   }
 
   @Override
   public void onCompleteParse() throws IOException {
-    // nothing to do
+    writeBuffer.flush();
+    if (terminologyBase instanceof PostGresTerminologyBase)
+      LOG.info(((PostGresTerminologyBase) terminologyBase).getMetrics().toString());
+    LOG.info(LexiconCache.getInstance().toString());
   }
 
-  Set<String> getExpansionStrings(PosTaggedToken noun, ParseConfiguration parseConfiguration, int depth,
-      Map<PosTaggedToken, List<Expansion>> expansionsPerNoun) {
+  Set<String> getExpansionStrings(PosTaggedToken noun, CodedSentence sentence) {
+    ParseConfiguration parseConfiguration = sentence.getParseConfiguration();
     Set<String> nounPhrases = null;
-    List<Expansion> expansions = this.engine.getExpansions(noun, parseConfiguration, 0, expansionsPerNoun);
+    List<Expansion> expansions = this.engine.getExpansions(noun, sentence, expansionTable);
 
     nounPhrases = new TreeSet<String>();
 
@@ -128,70 +136,44 @@ public class TermExtractor implements ParseConfigurationProcessor {
         continue;
 
       DependencyNode node = expansion.getNode();
-      Term term = terminologyBase.findTerm(expansion.display());
-      if (term.isNew()) {
-        term.setLexicalWordCount(expansion.getLexicalWordCount());
-        term.save();
-      }
+      String termText = expansion.display();
+      writeBuffer.addTerm(termText, expansion.getLexicalWordCount());
 
       Token firstToken = node.getFirstToken().getToken();
+      Token lastToken = node.getLastToken().getToken();
 
-      Context context = terminologyBase.findContext(term, firstToken.getFileName(), firstToken.getLineNumber(), firstToken.getColumnNumber());
-
-      if (context.isNew()) {
-        Token lastToken = node.getLastToken().getToken();
+      int startIndex = firstToken.getIndex();
+      startIndex -= TOKEN_BUFFER_FOR_CONTEXT;
+      if (startIndex < 0)
+        startIndex = 0;
 
-        context.setEndLineNumber(lastToken.getLineNumberEnd());
-        context.setEndColumnNumber(lastToken.getColumnNumberEnd());
+      int endIndex = lastToken.getIndex();
+      endIndex += TOKEN_BUFFER_FOR_CONTEXT;
+      if (endIndex >= parseConfiguration.getPosTagSequence().getTokenSequence().size())
+        endIndex = parseConfiguration.getPosTagSequence().getTokenSequence().size() - 1;
 
-        int startIndex = firstToken.getIndex();
-        startIndex -= TOKEN_BUFFER_FOR_CONTEXT;
-        if (startIndex < 0)
-          startIndex = 0;
+      Token startToken = parseConfiguration.getPosTagSequence().getTokenSequence().get(startIndex);
+      Token endToken = parseConfiguration.getPosTagSequence().getTokenSequence().get(endIndex);
+      String text = parseConfiguration.getPosTagSequence().getTokenSequence().getSentence().getText().toString();
+      String textSegment = text.substring(startToken.getStartIndex(), endToken.getEndIndex());
 
-        int endIndex = lastToken.getIndex();
-        endIndex += TOKEN_BUFFER_FOR_CONTEXT;
-        if (endIndex >= parseConfiguration.getPosTagSequence().getTokenSequence().size())
-          endIndex = parseConfiguration.getPosTagSequence().getTokenSequence().size() - 1;
-
-        Token startToken = parseConfiguration.getPosTagSequence().getTokenSequence().get(startIndex);
-        Token endToken = parseConfiguration.getPosTagSequence().getTokenSequence().get(endIndex);
-        String text = parseConfiguration.getPosTagSequence().getTokenSequence().getSentence().getText().toString();
-        String textSegment = text.substring(startToken.getStartIndex(), endToken.getEndIndex());
-        context.setTextSegment(textSegment);
-        context.save();
-      }
-
-      term.addContext(context);
-
-      for (TermObserver termObserver : termObservers) {
-        termObserver.onNewTerm(term);
-      }
+      writeBuffer.addContext(termText, firstToken.getFileName(), firstToken.getLineNumber(), firstToken.getColumnNumber(),
+          lastToken.getLineNumberEnd(), lastToken.getColumnNumberEnd(), textSegment);
 
       for (Expansion parent : expansion.getParents()) {
         if (parent.display().length() == 0)
           continue;
-        Term parentTerm = terminologyBase.findTerm(parent.display());
-        if (parentTerm.isNew()) {
-          parentTerm.setLexicalWordCount(parent.getLexicalWordCount());
-        }
-        parentTerm.addExpansion(term);
-        parentTerm.save();
+        writeBuffer.addTerm(parent.display(), parent.getLexicalWordCount());
+        writeBuffer.addExpansion(parent.display(), termText);
       }
 
       for (Expansion child : expansion.getChildren()) {
         if (child.display().length() == 0)
           continue;
-        Term childTerm = terminologyBase.findTerm(child.display());
-        if (childTerm.isNew()) {
-          childTerm.setLexicalWordCount(child.getLexicalWordCount());
-        }
-        childTerm.addHead(term);
-        childTerm.save();
+        writeBuffer.addTerm(child.display(), child.getLexicalWordCount());
+        writeBuffer.addHead(child.display(), termText);
       }
 
-      terminologyBase.commit();
-
       String nounPhrase = expansion.display();
       nounPhrases.add(nounPhrase);
     }
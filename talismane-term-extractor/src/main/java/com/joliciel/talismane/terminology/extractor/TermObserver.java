@@ -21,7 +21,6 @@ package com.joliciel.talismane.terminology.extractor;
 import com.joliciel.talismane.TalismaneException;
 import com.joliciel.talismane.terminology.Term;
 import com.typesafe.config.Config;
-import com.typesafe.config.ConfigFactory;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -35,14 +34,13 @@ public interface TermObserver {
    * Collect the term observers specified in the configuration key
    * talismane.terminology.term-observers.<br/>
    * 
+   * @param parserConfig
+   *          the talismane.terminology configuration
    * @return
    * @throws TalismaneException
    *           if a processor does not implement the TermObserver interface.
    */
-    static List<TermObserver> getObservers() throws ReflectiveOperationException {
-    Config config = ConfigFactory.load();
-    Config parserConfig = config.getConfig("talismane.terminology");
-
+    static List<TermObserver> getObservers(Config parserConfig) throws ReflectiveOperationException {
     List<TermObserver> observers = new ArrayList<>();
     List<String> classes = parserConfig.getStringList("term-observers");
 
@@ -0,0 +1,303 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology.extractor;
+
+import com.joliciel.talismane.terminology.Context;
+import com.joliciel.talismane.terminology.Term;
+import com.joliciel.talismane.terminology.TerminologyBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * A write-behind buffer for the terms, contexts and head/expansion links found
+ * by the {@link TermExtractor}.<br/>
+ * Items are accumulated across sentences, and only written to the
+ * {@link TerminologyBase} when the buffer is flushed, either because the
+ * maximum number of sentences or the maximum delay has been reached, or because
+ * the parse is complete. Within a single flush, each distinct term, context and
+ * link is only written once.<br/>
+ * Each flush is committed as a single transaction. If the transaction fails
+ * because of a concurrent write, it is rolled back and the flush is retried.
+ *
+ * @author Assaf Urieli
+ *
+ */
+class TermWriteBuffer {
+  private static final Logger LOG = LoggerFactory.getLogger(TermWriteBuffer.class);
+
+  private final TerminologyBase terminologyBase;
+  private final List<TermObserver> termObservers;
+  private final int maxSentences;
+  private final long maxDelay;
+  private final int maxRetries;
+
+  private final Map<String, Integer> lexicalWordCounts = new LinkedHashMap<>();
+  private final Map<ContextKey, BufferedContext> contexts = new LinkedHashMap<>();
+  private final Map<String, Set<String>> expansions = new LinkedHashMap<>();
+  private final Map<String, Set<String>> heads = new LinkedHashMap<>();
+  private final List<BufferedSentence> sentences = new ArrayList<>();
+
+  private int sentenceCount = 0;
+  private long firstSentenceTime = 0;
+
+  /**
+   * @param maxSentences
+   *          the maximum number of sentences to buffer before a flush is
+   *          required
+   * @param maxDelay
+   *          the maximum time to keep the first buffered sentence before a
+   *          flush is required
+   * @param maxRetries
+   *          the maximum number of times to retry a flush after a
+   *          serialization failure or unique constraint violation
+   */
+  TermWriteBuffer(TerminologyBase terminologyBase, List<TermObserver> termObservers, int maxSentences, Duration maxDelay,
+      int maxRetries) {
+    this.terminologyBase = terminologyBase;
+    this.termObservers = termObservers;
+    this.maxSentences = maxSentences;
+    this.maxDelay = maxDelay.toMillis();
+    this.maxRetries = maxRetries;
+  }
+
+  /**
+   * Indicates that all subsequent items belong to a new sentence.
+   */
+  void onNewSentence(String text) {
+    if (sentenceCount == 0)
+      firstSentenceTime = System.currentTimeMillis();
+    sentenceCount++;
+
+    // observers are only notified once the terms have been stored, so we
+    // need to keep track of what was found in each sentence
+    if (termObservers.size() > 0)
+      sentences.add(new BufferedSentence(text));
+  }
+
+  /**
+   * Add a term, which will be created at the next flush if it doesn't yet
+   * exist.
+   */
+  void addTerm(String text, int lexicalWordCount) {
+    lexicalWordCounts.putIfAbsent(text, lexicalWordCount);
+  }
+
+  /**
+   * Add a context for a term already added via
+   * {@link #addTerm(String, int)}. If a context already exists at the same
+   * location, it is not overwritten.
+   */
+  void addContext(String termText, String fileName, int lineNumber, int columnNumber, int endLineNumber, int endColumnNumber,
+      String textSegment) {
+    ContextKey key = new ContextKey(termText, fileName, lineNumber, columnNumber);
+    contexts.putIfAbsent(key, new BufferedContext(key, endLineNumber, endColumnNumber, textSegment));
+
+    if (sentences.size() > 0)
+      sentences.get(sentences.size() - 1).termTexts.add(termText);
+  }
+
+  /**
+   * Add an expansion link between two terms already added via
+   * {@link #addTerm(String, int)}.
+   */
+  void addExpansion(String termText, String expansionText) {
+    expansions.computeIfAbsent(termText, k -> new LinkedHashSet<>()).add(expansionText);
+  }
+
+  /**
+   * Add a head link between two terms already added via
+   * {@link #addTerm(String, int)}.
+   */
+  void addHead(String termText, String headText) {
+    heads.computeIfAbsent(termText, k -> new LinkedHashSet<>()).add(headText);
+  }
+
+  /**
+   * Has either the maximum number of sentences or the maximum delay been
+   * reached?
+   */
+  boolean isFlushRequired() {
+    if (sentenceCount == 0)
+      return false;
+    return sentenceCount >= maxSentences || System.currentTimeMillis() - firstSentenceTime >= maxDelay;
+  }
+
+  /**
+   * Write all buffered items to the terminology base, commit, and empty the
+   * buffer.
+   */
+  void flush() {
+    if (sentenceCount == 0)
+      return;
+
+    long startTime = System.currentTimeMillis();
+
+    Map<String, Term> terms = null;
+    int attempt = 0;
+    while (terms == null) {
+      try {
+        terms = this.write();
+        terminologyBase.commit();
+      } catch (ConcurrencyFailureException | DuplicateKeyException e) {
+        terms = null;
+        terminologyBase.rollback();
+        attempt++;
+        if (attempt > maxRetries)
+          throw e;
+        LOG.warn("Flush failed, retrying (attempt " + attempt + " of " + maxRetries + "): " + e.getMessage());
+      } catch (RuntimeException e) {
+        terminologyBase.rollback();
+        throw e;
+      }
+    }
+
+    for (BufferedSentence sentence : sentences) {
+      for (TermObserver termObserver : termObservers) {
+        termObserver.onNewContext(sentence.text);
+        for (String termText : sentence.termTexts)
+          termObserver.onNewTerm(terms.get(termText));
+      }
+    }
+
+    if (LOG.isDebugEnabled())
+      LOG.debug("Flushed " + sentenceCount + " sentences: " + terms.size() + " terms, " + contexts.size() + " contexts in "
+          + (System.currentTimeMillis() - startTime) + " ms");
+
+    lexicalWordCounts.clear();
+    contexts.clear();
+    expansions.clear();
+    heads.clear();
+    sentences.clear();
+    sentenceCount = 0;
+  }
+
+  /**
+   * Write all buffered items, without committing. Terms are resolved afresh
+   * on each call, so that a retry doesn't reuse ids from a rolled back
+   * transaction.
+   *
+   * @return the terms written, by text
+   */
+  private Map<String, Term> write() {
+    // store new terms first, so that they have been assigned an id before
+    // storing their contexts and links - we only need to resolve each term's
+    // id here, not its frequency
+    Map<String, Term> terms = new HashMap<>();
+    List<Term> newTerms = new ArrayList<>();
+    for (Map.Entry<String, Integer> entry : lexicalWordCounts.entrySet()) {
+      Term term = terminologyBase.resolveTerm(entry.getKey());
+      if (term.isNew()) {
+        term.setLexicalWordCount(entry.getValue());
+        newTerms.add(term);
+      }
+      terms.put(entry.getKey(), term);
+    }
+    terminologyBase.storeTerms(newTerms);
+
+    // contexts already stored at the same location are skipped by the
+    // terminology base
+    List<Context> newContexts = new ArrayList<>(contexts.size());
+    for (BufferedContext bufferedContext : contexts.values()) {
+      ContextKey key = bufferedContext.key;
+      Term term = terms.get(key.termText);
+      Context context = terminologyBase.newContext(term, key.fileName, key.lineNumber, key.columnNumber);
+      context.setEndLineNumber(bufferedContext.endLineNumber);
+      context.setEndColumnNumber(bufferedContext.endColumnNumber);
+      context.setTextSegment(bufferedContext.textSegment);
+      newContexts.add(context);
+    }
+    terminologyBase.storeContexts(newContexts);
+
+    Set<Term> linkedTerms = new LinkedHashSet<>();
+    for (Map.Entry<String, Set<String>> entry : expansions.entrySet()) {
+      Term term = terms.get(entry.getKey());
+      for (String expansionText : entry.getValue())
+        term.addExpansion(terms.get(expansionText));
+      linkedTerms.add(term);
+    }
+
+    for (Map.Entry<String, Set<String>> entry : heads.entrySet()) {
+      Term term = terms.get(entry.getKey());
+      for (String headText : entry.getValue())
+        term.addHead(terms.get(headText));
+      linkedTerms.add(term);
+    }
+    terminologyBase.storeTerms(linkedTerms);
+
+    return terms;
+  }
+
+  private static final class ContextKey {
+    private final String termText;
+    private final String fileName;
+    private final int lineNumber;
+    private final int columnNumber;
+
+    private ContextKey(String termText, String fileName, int lineNumber, int columnNumber) {
+      this.termText = termText;
+      this.fileName = fileName;
+      this.lineNumber = lineNumber;
+      this.columnNumber = columnNumber;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      ContextKey that = (ContextKey) o;
+      return lineNumber == that.lineNumber &&
+          columnNumber == that.columnNumber &&
+          termText.equals(that.termText) &&
+          Objects.equals(fileName, that.fileName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(termText, fileName, lineNumber, columnNumber);
+    }
+  }
+
+  private static final class BufferedContext {
+    private final ContextKey key;
+    private final int endLineNumber;
+    private final int endColumnNumber;
+    private final String textSegment;
+
+    private BufferedContext(ContextKey key, int endLineNumber, int endColumnNumber, String textSegment) {
+      this.key = key;
+      this.endLineNumber = endLineNumber;
+      this.endColumnNumber = endColumnNumber;
+      this.textSegment = textSegment;
+    }
+  }
+
+  private static final class BufferedSentence {
+    private final String text;
+    private final List<String> termTexts = new ArrayList<>();
+
+    private BufferedSentence(String text) {
+      this.text = text;
+    }
+  }
+}
@@ -23,7 +23,9 @@ import com.joliciel.talismane.parser.ParseTree;
 import com.joliciel.talismane.parser.ParserAnnotatedCorpusReader;
 import com.joliciel.talismane.parser.ParserRegexBasedCorpusReader;
 import com.joliciel.talismane.posTagger.PosTaggedToken;
+import com.joliciel.talismane.terminology.CodedSentence;
 import com.joliciel.talismane.terminology.Expansion;
+import com.joliciel.talismane.terminology.LanguageProfile;
 import com.joliciel.talismane.terminology.Term;
 import com.joliciel.talismane.terminology.TerminologyBase;
 import com.typesafe.config.Config;
@@ -73,8 +75,7 @@ public class TermExtractionEngineTest {
 
     // test depth (1)
     TermExtractionEngine engine = new TermExtractionEngine(sessionId, 1);
-    Map<PosTaggedToken, List<Expansion>> expansionsPerNoun = new HashMap<>();
-    List<Expansion> expansions = engine.getExpansions(chat, configuration, 0, expansionsPerNoun);
+    List<Expansion> expansions = engine.getExpansions(chat, configuration);
     Set<String> expansionStrings = new TreeSet<>();
     for (Expansion expansion : expansions) {
       expansionStrings.add(expansion.display());
@@ -96,8 +97,7 @@ public class TermExtractionEngineTest {
 
     // test depth (2)
     engine = new TermExtractionEngine(sessionId, 2);
-    expansionsPerNoun = new HashMap<>();
-    expansions = engine.getExpansions(chat, configuration, 0, expansionsPerNoun);
+    expansions = engine.getExpansions(chat, configuration);
     expansionStrings = new TreeSet<>();
     for (Expansion expansion : expansions) {
       expansionStrings.add(expansion.display());
@@ -176,8 +176,7 @@ public class TermExtractionEngineTest {
       LOG.debug(expansionString);
     }
 
-    expansionsPerNoun = new HashMap<>();
-    expansions = engine.getExpansions(chat, configuration, 0, expansionsPerNoun);
+    expansions = engine.getExpansions(chat, configuration);
     expansionStrings = new TreeSet<>();
     for (Expansion expansion : expansions) {
       expansionStrings.add(expansion.display());
@@ -224,8 +223,7 @@ public class TermExtractionEngineTest {
       LOG.debug(expansionString);
     }
 
-    expansionsPerNoun = new HashMap<>();
-    expansions = engine.getExpansions(chat, configuration, 0, expansionsPerNoun);
+    expansions = engine.getExpansions(chat, configuration);
     expansionStrings = new TreeSet<>();
     for (Expansion expansion : expansions) {
       expansionStrings.add(expansion.display());
@@ -276,8 +274,7 @@ public class TermExtractionEngineTest {
 
     // test depth (1)
     TermExtractionEngine engine = new TermExtractionEngine(sessionId, 1);
-    Map<PosTaggedToken, List<Expansion>> expansionsPerNoun = new HashMap<>();
-    List<Expansion> expansions = engine.getExpansions(chat, configuration, 0, expansionsPerNoun);
+    List<Expansion> expansions = engine.getExpansions(chat, configuration);
     Set<String> expansionStrings = new TreeSet<>();
     for (Expansion expansion : expansions) {
       expansionStrings.add(expansion.display());
@@ -299,8 +296,7 @@ public class TermExtractionEngineTest {
 
     // test depth (2)
     engine = new TermExtractionEngine(sessionId, 2);
-    expansionsPerNoun = new HashMap<>();
-    expansions = engine.getExpansions(chat, configuration, 0, expansionsPerNoun);
+    expansions = engine.getExpansions(chat, configuration);
     expansionStrings = new TreeSet<>();
     for (Expansion expansion : expansions) {
       expansionStrings.add(expansion.display());
@@ -360,4 +356,35 @@ public class TermExtractionEngineTest {
 
     assertEquals(limitedDepthExpansions, expansionStrings);
   }
+
+  @Test
+  public void testTableReusedAcrossSentences() throws Exception {
+    String sessionId = "test";
+    Config config = ConfigFactory.load();
+    Config readerConfig = config.getConfig("talismane.core." + sessionId + ".parser.input");
+
+    TermExtractionEngine engine = new TermExtractionEngine(sessionId, 4);
+    LanguageProfile profile = LanguageProfile.getInstance();
+    ExpansionTable table = new ExpansionTable();
+
+    for (String resource : new String[] { "termTestCONLL.txt", "termTestCONLLPlural.txt", "termTestCONLL.txt" }) {
+      InputStream configurationInputStream = getClass().getResourceAsStream(resource);
+      Reader configurationReader = new BufferedReader(new InputStreamReader(configurationInputStream, "UTF-8"));
+      ParserAnnotatedCorpusReader corpusReader = new ParserRegexBasedCorpusReader(configurationReader, readerConfig, sessionId);
+      ParseConfiguration configuration = corpusReader.nextConfiguration();
+      CodedSentence sentence = profile.code(configuration);
+
+      for (PosTaggedToken posTaggedToken : configuration.getPosTagSequence()) {
+        if (!sentence.isNominal(posTaggedToken))
+          continue;
+        Set<String> expected = new TreeSet<>();
+        for (Expansion expansion : engine.getExpansions(posTaggedToken, configuration))
+          expected.add(expansion.display());
+        Set<String> actual = new TreeSet<>();
+        for (Expansion expansion : engine.getExpansions(posTaggedToken, sentence, table))
+          actual.add(expansion.display());
+        assertEquals(expected, actual);
+      }
+    }
+  }
 }
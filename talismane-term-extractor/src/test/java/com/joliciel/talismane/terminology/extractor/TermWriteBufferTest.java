@@ -0,0 +1,113 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology.extractor;
+
+import com.joliciel.talismane.terminology.Context;
+import com.joliciel.talismane.terminology.Term;
+import com.joliciel.talismane.terminology.TerminologyBase;
+import org.junit.Test;
+import org.springframework.dao.CannotSerializeTransactionException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class TermWriteBufferTest {
+
+  @Test
+  public void testFlushRequired() throws Exception {
+    final TerminologyBase terminologyBase = mock(TerminologyBase.class);
+    TermWriteBuffer buffer = new TermWriteBuffer(terminologyBase, new ArrayList<>(), 2, Duration.ofHours(1), 3);
+
+    assertFalse(buffer.isFlushRequired());
+    buffer.onNewSentence("Le chat.");
+    assertFalse(buffer.isFlushRequired());
+    buffer.onNewSentence("Le chien.");
+    assertTrue(buffer.isFlushRequired());
+
+    buffer.flush();
+    assertFalse(buffer.isFlushRequired());
+    verify(terminologyBase, times(1)).commit();
+
+    // nothing buffered, nothing to commit
+    buffer.flush();
+    verify(terminologyBase, times(1)).commit();
+  }
+
+  @Test
+  public void testFlushWritesEachItemOnce() throws Exception {
+    final TerminologyBase terminologyBase = mock(TerminologyBase.class);
+    final Term chat = mock(Term.class);
+    final Term petitChat = mock(Term.class);
+    final Context context = mock(Context.class);
+    when(chat.isNew()).thenReturn(true);
+    when(petitChat.isNew()).thenReturn(false);
+    when(terminologyBase.resolveTerm("chat")).thenReturn(chat);
+    when(terminologyBase.resolveTerm("petit chat")).thenReturn(petitChat);
+    when(terminologyBase.newContext(any(Term.class), anyString(), anyInt(), anyInt())).thenReturn(context);
+
+    TermWriteBuffer buffer = new TermWriteBuffer(terminologyBase, new ArrayList<>(), 10, Duration.ofHours(1), 3);
+    for (int i = 0; i < 3; i++) {
+      buffer.onNewSentence("Le petit chat.");
+      buffer.addTerm("petit chat", 2);
+      buffer.addContext("petit chat", "chat.txt", 1, 4, 1, 14, "Le petit chat.");
+      buffer.addTerm("chat", 1);
+      buffer.addExpansion("chat", "petit chat");
+    }
+    buffer.flush();
+
+    verify(terminologyBase, times(1)).resolveTerm("chat");
+    verify(terminologyBase, times(1)).resolveTerm("petit chat");
+    verify(chat).setLexicalWordCount(1);
+    verify(petitChat, never()).setLexicalWordCount(anyInt());
+    verify(terminologyBase, times(1)).newContext(petitChat, "chat.txt", 1, 4);
+    verify(terminologyBase).storeTerms(Arrays.asList(chat));
+    verify(terminologyBase).storeContexts(Arrays.asList(context));
+    verify(chat, times(1)).addExpansion(petitChat);
+    verify(terminologyBase).storeTerms(new LinkedHashSet<>(Arrays.asList(chat)));
+    verify(terminologyBase, times(1)).commit();
+  }
+
+  @Test
+  public void testFlushRetriedAfterSerializationFailure() throws Exception {
+    final TerminologyBase terminologyBase = mock(TerminologyBase.class);
+    final Term chat = mock(Term.class);
+    when(chat.isNew()).thenReturn(false);
+    when(terminologyBase.resolveTerm("chat")).thenReturn(chat);
+    doThrow(new CannotSerializeTransactionException("conflict")).doNothing().when(terminologyBase).commit();
+
+    TermWriteBuffer buffer = new TermWriteBuffer(terminologyBase, new ArrayList<>(), 10, Duration.ofHours(1), 3);
+    buffer.onNewSentence("Le chat.");
+    buffer.addTerm("chat", 1);
+    buffer.flush();
+
+    verify(terminologyBase, times(1)).rollback();
+    verify(terminologyBase, times(2)).resolveTerm("chat");
+    verify(terminologyBase, times(2)).commit();
+    assertFalse(buffer.isFlushRequired());
+  }
+}
@@ -19,6 +19,7 @@ import joptsimple.OptionSpec;
 
 @SuppressWarnings("restriction")
 public class TerminologyViewer extends Application {
+  private TerminologyViewerController controller = null;
 
   public static void main(String[] args) throws Exception {
     final OptionParser parser = new OptionParser();
@@ -44,11 +45,17 @@ public class TerminologyViewer extends Application {
     URL fxmlURL = TerminologyViewer.class.getResource("resources/terminology_viewer.fxml");
     Parent root = (Parent) fxmlLoader.load(fxmlURL.openStream());
 
-    TerminologyViewerController controller = fxmlLoader.getController();
+    controller = fxmlLoader.getController();
     controller.setPrimaryStage(stage);
 
     stage.setTitle("Talismane Terminology Viewer");
     stage.setScene(new Scene(root, 800, 400));
     stage.show();
   }
+
+  @Override
+  public void stop() throws Exception {
+    if (controller != null)
+      controller.close();
+  }
 }
@@ -40,21 +40,28 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.joliciel.talismane.terminology.AsyncTerminologyBase;
 import com.joliciel.talismane.terminology.Context;
 import com.joliciel.talismane.terminology.Term;
+import com.joliciel.talismane.terminology.TermSearchMode;
 import com.joliciel.talismane.terminology.TerminologyBase;
 import com.joliciel.talismane.terminology.postgres.PostGresTerminologyBase;
 import com.joliciel.talismane.utils.CSVFormatter;
@@ -88,6 +95,7 @@ import javafx.stage.Stage;
 @SuppressWarnings("restriction")
 public class TerminologyViewerController {
   private static final Logger LOG = LoggerFactory.getLogger(TerminologyViewerController.class);
+  private static final int EXPORT_BATCH_SIZE = 1000;
   private static CSVFormatter CSV = new CSVFormatter();
 
   @FXML
@@ -110,6 +118,7 @@ public class TerminologyViewerController {
   private Label lblTermCount;
 
   TerminologyBase terminologyBase = null;
+  AsyncTerminologyBase asyncTerminologyBase = null;
   Stage primaryStage = null;
   String editor = null;
   String arguments = null;
@@ -153,10 +162,24 @@ public class TerminologyViewerController {
 
   @FXML
   protected void handleMenuFileDatabaseAction(ActionEvent event) {
-    terminologyBase = new PostGresTerminologyBase(projectCode);
+    this.close();
+    PostGresTerminologyBase postGresTerminologyBase = new PostGresTerminologyBase(projectCode);
+    terminologyBase = postGresTerminologyBase;
+    asyncTerminologyBase = postGresTerminologyBase;
     this.onNewTermingologyBase();
   }
 
+  /**
+   * Close the current terminology base, if any, stopping its background
+   * threads and connection pools.
+   */
+  void close() {
+    if (terminologyBase instanceof PostGresTerminologyBase)
+      ((PostGresTerminologyBase) terminologyBase).close();
+    terminologyBase = null;
+    asyncTerminologyBase = null;
+  }
+
   private void onNewTermingologyBase() {
     int minFrequency = 5;
     try {
@@ -164,11 +187,28 @@ public class TerminologyViewerController {
     } catch (NumberFormatException nfe) {
       // do nothing
     }
-    List<Term> terms = terminologyBase.findTerms(minFrequency, null, 0, null);
-
-    tblTerms.setItems(FXCollections.observableArrayList(this.wrapTerms(terms)));
-    this.pushTermTable();
-    btnReload.setDisable(false);
+    TermSearch search = new TermSearch(minFrequency, null, 0, null);
+    this.onLoaded(search.findTermsAsync(asyncTerminologyBase), terms -> {
+      tblTerms.setItems(FXCollections.observableArrayList(this.wrapTerms(terms)));
+      this.pushTermTable(search);
+      btnReload.setDisable(false);
+    });
+  }
+
+  /**
+   * Once a background load has completed, pass its result to an action on
+   * the JavaFX thread, or show the error if it failed.
+   */
+  private <T> void onLoaded(CompletableFuture<T> future, Consumer<T> action) {
+    future.whenComplete((result, e) -> Platform.runLater(() -> {
+      if (e == null) {
+        action.accept(result);
+      } else {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        LOG.error("Failed to read from the terminology base", cause);
+        this.showAlert("Failed to read from the terminology base: " + cause.getMessage());
+      }
+    }));
   }
 
   private Collection<Term> wrapTerms(Collection<Term> terms) {
@@ -235,9 +275,11 @@ public class TerminologyViewerController {
 
     if (haveCriteria) {
       this.setSelectedTerm();
-      List<Term> terms = terminologyBase.findTerms(minFrequency, searchText, maxLexicalWords, marked);
-      tblTerms.setItems(FXCollections.observableArrayList(this.wrapTerms(terms)));
-      this.pushTermTable();
+      TermSearch search = new TermSearch(minFrequency, searchText, maxLexicalWords, marked);
+      this.onLoaded(search.findTermsAsync(asyncTerminologyBase), terms -> {
+        tblTerms.setItems(FXCollections.observableArrayList(this.wrapTerms(terms)));
+        this.pushTermTable(search);
+      });
     } else {
       this.showAlert("No selection criteria entered.");
     }
@@ -252,9 +294,10 @@ public class TerminologyViewerController {
       if (term instanceof TermWrapper) {
         term = ((TermWrapper) term).getWrappedTerm();
       }
-      Set<Term> heads = terminologyBase.getHeads(term);
-      tblTerms.setItems(FXCollections.observableArrayList(this.wrapTerms(heads)));
-      this.pushTermTable();
+      this.onLoaded(asyncTerminologyBase.getHeadsAsync(term), heads -> {
+        tblTerms.setItems(FXCollections.observableArrayList(this.wrapTerms(heads)));
+        this.pushTermTable();
+      });
     }
   }
 
@@ -270,9 +313,10 @@ public class TerminologyViewerController {
       if (term instanceof TermWrapper) {
         term = ((TermWrapper) term).getWrappedTerm();
       }
-      Set<Term> expansions = terminologyBase.getExpansions(term);
-      tblTerms.setItems(FXCollections.observableArrayList(this.wrapTerms(expansions)));
-      this.pushTermTable();
+      this.onLoaded(asyncTerminologyBase.getExpansionsAsync(term), expansions -> {
+        tblTerms.setItems(FXCollections.observableArrayList(this.wrapTerms(expansions)));
+        this.pushTermTable();
+      });
     }
   }
 
@@ -310,28 +354,35 @@ public class TerminologyViewerController {
     // Show save file dialog
     File file = fileChooser.showSaveDialog(primaryStage);
     if (file != null) {
-      try {
-        CSV.setAddQuotesAlways(true);
-        CSV.setCsvSeparator(csvSeparator);
-        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)));
-        ObservableList<Term> terms = tblTerms.getItems();
+      CSV.setAddQuotesAlways(true);
+      CSV.setCsvSeparator(csvSeparator);
+      try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)))) {
         writer.append(CSV.format("Term") + CSV.format("Frequency") + CSV.format("Expansions") + CSV.format("Contexts") + "\n");
-        for (Term term : terms) {
+
+        // write the terms a batch at a time, loading the contexts for each batch
+        List<Term> batch = new ArrayList<Term>(EXPORT_BATCH_SIZE);
+        Consumer<Term> exporter = term -> {
           if (term instanceof TermWrapper) {
             term = ((TermWrapper) term).getWrappedTerm();
           }
-          writer.append(CSV.format(term.getText()));
-          writer.append(CSV.format(term.getFrequency()));
-          writer.append(CSV.format(term.getExpansionCount()));
-          StringBuilder sb = new StringBuilder();
-          for (Context context : terminologyBase.getContexts(term)) {
-            sb.append(context.getTextSegment() + "|");
+          batch.add(term);
+          if (batch.size() == EXPORT_BATCH_SIZE) {
+            this.exportTerms(batch, writer);
+            batch.clear();
           }
-          writer.append(CSV.format(sb.toString()));
-          writer.append("\n");
-          writer.flush();
-        }
-        writer.close();
+        };
+
+        // if the table holds the result of a search, stream the search again
+        // rather than holding a second copy of every term in memory
+        TermSearch search = null;
+        if (currentHistoryIndex >= 0 && currentHistoryIndex < termTableHistory.size())
+          search = termTableHistory.get(currentHistoryIndex).search;
+        if (search != null)
+          search.findTerms(terminologyBase, exporter);
+        else
+          tblTerms.getItems().forEach(exporter);
+
+        this.exportTerms(batch, writer);
       } catch (IOException ioe) {
         throw new RuntimeException(ioe);
       }
@@ -339,6 +390,28 @@ public class TerminologyViewerController {
 
   }
 
+  private void exportTerms(List<Term> terms, Writer writer) {
+    if (terms.size() == 0)
+      return;
+    try {
+      Map<Term, List<Context>> contextMap = terminologyBase.getContexts(terms, 0);
+      for (Term term : terms) {
+        writer.append(CSV.format(term.getText()));
+        writer.append(CSV.format(term.getFrequency()));
+        writer.append(CSV.format(term.getExpansionCount()));
+        StringBuilder sb = new StringBuilder();
+        for (Context context : contextMap.getOrDefault(term, Collections.emptyList())) {
+          sb.append(context.getTextSegment() + "|");
+        }
+        writer.append(CSV.format(sb.toString()));
+        writer.append("\n");
+      }
+      writer.flush();
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
   @FXML
   protected void tblTerms_OnMouseClicked(MouseEvent mouseEvent) {
     if (mouseEvent.getButton().equals(MouseButton.PRIMARY)) {
@@ -513,26 +586,36 @@ public class TerminologyViewerController {
   }
 
   void refreshContexts() {
-    Term term = tblTerms.getSelectionModel().getSelectedItem();
-    if (term != null) {
+    final Term selectedTerm = tblTerms.getSelectionModel().getSelectedItem();
+    if (selectedTerm != null) {
+      Term term = selectedTerm;
       if (term instanceof TermWrapper) {
         term = ((TermWrapper) term).getWrappedTerm();
       }
-      List<Context> contexts = new ArrayList<Context>();
-      if (term != null) {
-        contexts = terminologyBase.getContexts(term);
+      if (term == null) {
+        tblContexts.setItems(FXCollections.observableArrayList(new ArrayList<Context>()));
+        return;
       }
-      tblContexts.setItems(FXCollections.observableArrayList(contexts));
+      // load the contexts in the background, and ignore them if the selection
+      // has changed in the meantime
+      this.onLoaded(asyncTerminologyBase.getContextsAsync(term), contexts -> {
+        if (tblTerms.getSelectionModel().getSelectedItem() == selectedTerm)
+          tblContexts.setItems(FXCollections.observableArrayList(contexts));
+      });
     }
   }
 
   void pushTermTable() {
+    this.pushTermTable(null);
+  }
+
+  void pushTermTable(TermSearch search) {
     lblTermCount.setText("" + tblTerms.getItems().size());
     for (int i = currentHistoryIndex + 1; i < termTableHistory.size(); i++) {
       termTableHistory.removeLast();
     }
 
-    TermTableDefinition def = new TermTableDefinition(tblTerms);
+    TermTableDefinition def = new TermTableDefinition(tblTerms, search);
     termTableHistory.addLast(def);
     if (termTableHistory.size() > 10)
       termTableHistory.removeFirst();
@@ -548,13 +631,40 @@ public class TerminologyViewerController {
     // tblTerms.scrollTo(0);
   }
 
+  /**
+   * The criteria of a term search, so that it can be run again.
+   */
+  private static final class TermSearch {
+    private final int minFrequency;
+    private final String searchText;
+    private final int maxLexicalWords;
+    private final Boolean marked;
+
+    public TermSearch(int minFrequency, String searchText, int maxLexicalWords, Boolean marked) {
+      this.minFrequency = minFrequency;
+      this.searchText = searchText;
+      this.maxLexicalWords = maxLexicalWords;
+      this.marked = marked;
+    }
+
+    public CompletableFuture<List<Term>> findTermsAsync(AsyncTerminologyBase terminologyBase) {
+      return terminologyBase.findTermsAsync(minFrequency, searchText, TermSearchMode.PREFIX, maxLexicalWords, marked);
+    }
+
+    public void findTerms(TerminologyBase terminologyBase, Consumer<Term> termConsumer) {
+      terminologyBase.findTerms(minFrequency, searchText, TermSearchMode.PREFIX, maxLexicalWords, marked, termConsumer);
+    }
+  }
+
   private static final class TermTableDefinition {
     private ObservableList<Term> terms;
     private int selectedIndex;
+    private final TermSearch search;
 
-    public TermTableDefinition(TableView<Term> tblTerms) {
+    public TermTableDefinition(TableView<Term> tblTerms, TermSearch search) {
       this.terms = tblTerms.getItems();
       this.selectedIndex = tblTerms.getSelectionModel().getSelectedIndex();
+      this.search = search;
     }
 
     public void update(TableView<Term> tblTerms) {
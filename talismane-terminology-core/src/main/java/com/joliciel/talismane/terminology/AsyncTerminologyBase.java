@@ -0,0 +1,83 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous versions of the read methods of {@link TerminologyBase}, so
+ * that independent lookups can run concurrently and callers such as a user
+ * interface thread don't block on the datastore.<br>
+ * Writes are not included, since they take part in the caller's transaction.
+ * Results read asynchronously do not include writes that the caller has not
+ * yet committed.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public interface AsyncTerminologyBase {
+  /**
+   * See {@link TerminologyBase#findTerms(int, String, TermSearchMode, int, Boolean)}.
+   */
+  public CompletableFuture<List<Term>> findTermsAsync(final int frequencyThreshold,
+      final String searchText, final TermSearchMode searchMode,
+      final int maxLexicalWords, final Boolean marked);
+
+  /**
+   * See {@link TerminologyBase#findTerms(int, String, TermSearchMode, int, Boolean, Term, int)}.
+   */
+  public CompletableFuture<List<Term>> findTermsAsync(final int frequencyThreshold,
+      final String searchText, final TermSearchMode searchMode,
+      final int maxLexicalWords, final Boolean marked, Term after,
+      int pageSize);
+
+  /**
+   * See {@link TerminologyBase#findTerm(String)}.
+   */
+  public CompletableFuture<Term> findTermAsync(String text);
+
+  /**
+   * See {@link TerminologyBase#getParents(Term)}.
+   */
+  public CompletableFuture<Set<Term>> getParentsAsync(Term term);
+
+  /**
+   * See {@link TerminologyBase#getHeads(Term)}.
+   */
+  public CompletableFuture<Set<Term>> getHeadsAsync(Term term);
+
+  /**
+   * See {@link TerminologyBase#getExpansions(Term)}.
+   */
+  public CompletableFuture<Set<Term>> getExpansionsAsync(Term term);
+
+  /**
+   * See {@link TerminologyBase#getContexts(Term)}.
+   */
+  public CompletableFuture<List<Context>> getContextsAsync(Term term);
+
+  /**
+   * See {@link TerminologyBase#getContexts(Collection, int)}.
+   */
+  public CompletableFuture<Map<Term, List<Context>>> getContextsAsync(Collection<Term> terms, int maxContextsPerTerm);
+}
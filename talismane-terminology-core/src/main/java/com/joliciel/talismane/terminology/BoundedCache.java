@@ -0,0 +1,162 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache which can be read and written by many threads at once.
+ * Reads don't take any lock: each entry simply records when it was last read.
+ * When the cache grows beyond its maximum size, a single thread removes the
+ * least recently used entries, along with a tenth of the maximum size more,
+ * so that this only happens once every so many writes.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public final class BoundedCache<K, V> {
+  private final int maxSize;
+  private final ConcurrentHashMap<K, CachedValue<V>> cache = new ConcurrentHashMap<>();
+  private final AtomicLong clock = new AtomicLong();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  public BoundedCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * The value cached for a key, or null if there isn't one.
+   */
+  public V get(K key) {
+    CachedValue<V> cachedValue = cache.get(key);
+    if (cachedValue == null) {
+      missCount.increment();
+      return null;
+    }
+    hitCount.increment();
+    cachedValue.lastAccess = clock.incrementAndGet();
+    return cachedValue.value;
+  }
+
+  public void put(K key, V value) {
+    cache.put(key, new CachedValue<>(value, clock.incrementAndGet()));
+    if (cache.size() > maxSize && evictionLock.tryLock()) {
+      try {
+        this.evict();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  private void evict() {
+    int excess = cache.size() - maxSize;
+    if (excess <= 0)
+      return;
+
+    // take a snapshot of the access times, since they can change while
+    // sorting
+    List<Stamp<K, V>> stamps = new ArrayList<>(cache.size());
+    for (Map.Entry<K, CachedValue<V>> entry : cache.entrySet())
+      stamps.add(new Stamp<>(entry.getKey(), entry.getValue()));
+    stamps.sort(Comparator.comparingLong(stamp -> stamp.lastAccess));
+
+    int toRemove = Math.min(excess + maxSize / 10, stamps.size());
+    for (int i = 0; i < toRemove; i++) {
+      Stamp<K, V> stamp = stamps.get(i);
+      if (cache.remove(stamp.key, stamp.cachedValue))
+        evictionCount.increment();
+    }
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public int getSize() {
+    return cache.size();
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * The number of entries removed from the cache to make room for new ones.
+   */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  /**
+   * The proportion of lookups found in the cache, or 0 if there haven't been
+   * any lookups yet.
+   */
+  public double getHitRate() {
+    long hits = hitCount.sum();
+    long total = hits + missCount.sum();
+    return total == 0 ? 0.0 : (double) hits / (double) total;
+  }
+
+  @Override
+  public String toString() {
+    return "[size=" + cache.size() + ", hits=" + hitCount.sum() + ", misses=" + missCount.sum() + ", evictions=" + evictionCount.sum() + "]";
+  }
+
+  private static final class CachedValue<V> {
+    private final V value;
+    private volatile long lastAccess;
+
+    private CachedValue(V value, long lastAccess) {
+      this.value = value;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+  private static final class Stamp<K, V> {
+    private final K key;
+    private final CachedValue<V> cachedValue;
+    private final long lastAccess;
+
+    private Stamp(K key, CachedValue<V> cachedValue) {
+      this.key = key;
+      this.cachedValue = cachedValue;
+      this.lastAccess = cachedValue.lastAccess;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology;
+
+import com.joliciel.talismane.parser.DependencyArc;
+import com.joliciel.talismane.parser.DependencyNode;
+import com.joliciel.talismane.parser.ParseConfiguration;
+import com.joliciel.talismane.posTagger.PosTaggedToken;
+
+/**
+ * A parsed sentence whose tags and dependency labels have been coded against
+ * a {@link LanguageProfile}, so that testing whether a token's tag or label
+ * belongs to one of the profile's sets is a single array access and bit mask.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public final class CodedSentence {
+  private final LanguageProfile profile;
+  private final ParseConfiguration parseConfiguration;
+
+  // indexed by token index
+  private final long[] tagBits;
+  private final long[] labelBits;
+
+  CodedSentence(LanguageProfile profile, ParseConfiguration parseConfiguration) {
+    this.profile = profile;
+    this.parseConfiguration = parseConfiguration;
+
+    int size = 0;
+    for (PosTaggedToken posTaggedToken : parseConfiguration.getPosTagSequence())
+      size = Math.max(size, posTaggedToken.getIndex() + 1);
+
+    this.tagBits = new long[size];
+    this.labelBits = new long[size];
+    for (PosTaggedToken posTaggedToken : parseConfiguration.getPosTagSequence()) {
+      int index = posTaggedToken.getIndex();
+      tagBits[index] = profile.getTagBit(posTaggedToken.getTag().getCode());
+      DependencyArc arc = parseConfiguration.getGoverningDependency(posTaggedToken);
+      if (arc != null)
+        labelBits[index] = profile.getLabelBit(arc.getLabel());
+    }
+  }
+
+  /**
+   * One more than the highest token index in the sentence, so that arrays of
+   * this size can be indexed by token index.
+   */
+  public int size() {
+    return tagBits.length;
+  }
+
+  public LanguageProfile getProfile() {
+    return profile;
+  }
+
+  public ParseConfiguration getParseConfiguration() {
+    return parseConfiguration;
+  }
+
+  private boolean hasTag(PosTaggedToken posTaggedToken, long mask) {
+    return (tagBits[posTaggedToken.getIndex()] & mask) != 0;
+  }
+
+  private boolean hasLabel(PosTaggedToken posTaggedToken, long mask) {
+    return (labelBits[posTaggedToken.getIndex()] & mask) != 0;
+  }
+
+  public boolean isAdjectival(PosTaggedToken posTaggedToken) {
+    return this.hasTag(posTaggedToken, profile.adjectivalTagMask);
+  }
+
+  public boolean isDeterminent(PosTaggedToken posTaggedToken) {
+    return this.hasTag(posTaggedToken, profile.determinentTagMask);
+  }
+
+  public boolean isNominal(PosTaggedToken posTaggedToken) {
+    return this.hasTag(posTaggedToken, profile.nominalTagMask);
+  }
+
+  public boolean isNonStandalone(PosTaggedToken posTaggedToken) {
+    return this.hasTag(posTaggedToken, profile.nonStandaloneTagMask);
+  }
+
+  public boolean isNonStandaloneIfHasDependents(PosTaggedToken posTaggedToken) {
+    return this.hasTag(posTaggedToken, profile.nonStandaloneIfHasDependentsMask);
+  }
+
+  public boolean isPrepositional(PosTaggedToken posTaggedToken) {
+    return this.hasTag(posTaggedToken, profile.prepositionalTagMask);
+  }
+
+  public boolean isTermStop(PosTaggedToken posTaggedToken) {
+    return this.hasTag(posTaggedToken, profile.termStopTagMask);
+  }
+
+  /**
+   * Whether the dependency governing this token is a coordination.
+   */
+  public boolean isCoordination(PosTaggedToken posTaggedToken) {
+    return this.hasLabel(posTaggedToken, profile.coordinationLabelMask);
+  }
+
+  /**
+   * Whether this node's label is never included with a term governor.
+   */
+  public boolean isNonTopLevel(DependencyNode node) {
+    return this.hasLabel(node.getPosTaggedToken(), profile.nonTopLevelLabelMask);
+  }
+}
@@ -3,80 +3,70 @@ package com.joliciel.talismane.terminology;
 import com.joliciel.talismane.TalismaneSession;
 import com.joliciel.talismane.lexicon.LexicalAttribute;
 import com.joliciel.talismane.lexicon.LexicalEntry;
-import com.joliciel.talismane.lexicon.PosTaggerLexicon;
 import com.joliciel.talismane.parser.DependencyArc;
 import com.joliciel.talismane.parser.DependencyNode;
 import com.joliciel.talismane.posTagger.PosTagOpenClassIndicator;
 import com.joliciel.talismane.posTagger.PosTaggedToken;
 import com.joliciel.talismane.tokeniser.Token;
-import com.joliciel.talismane.tokeniser.filters.UppercaseSeriesFilter;
-import com.typesafe.config.Config;
-import com.typesafe.config.ConfigFactory;
 
 import java.util.*;
 
 public class Expansion {
   private final DependencyNode node;
-  private final PosTaggerLexicon lexicon;
+  private final LexiconCache lexiconCache;
   private final String sessionId;
+  private final CodedSentence codedSentence;
   
   private List<Expansion> children = null;
   private List<Expansion> parents = null;
   private Set<PosTaggedToken> tokenSet = null;
   private String text = null;
+  private ExpansionSpan span = null;
   
-  private final Set<String> zeroDepthLabels;
-  private final Set<String> termStopTags;
-  private final Set<String> nonStandaloneTags;
-  private final Set<String> nonStandaloneIfHasDependents;
-  private final Set<String> prepositionalTags;
-  private final Set<String> nominalTags;
-  private final Set<String> adjectivalTags;
-  private final Set<String> determinentTags;
-  private final Set<String> coordinationLabels;
   private final String lemmaNumber;
   private final String lemmaGender;
 
-  public Expansion(DependencyNode node, String sessionId) {
-    this.sessionId = sessionId;
-    
-    Config config = ConfigFactory.load().getConfig("talismane.terminology");
+  /**
+   * @param codedSentence
+   *          the sentence containing this node, coded against the language
+   *          profile
+   */
+  public Expansion(DependencyNode node, String sessionId, CodedSentence codedSentence) {
+    this(node, sessionId, codedSentence, null);
+  }
 
-    String language = config.getString("language");
-    Config languageConfig = config.getConfig(language);
+  /**
+   * @param span
+   *          the span of this node if it is already known, or null to
+   *          calculate it when needed
+   */
+  public Expansion(DependencyNode node, String sessionId, CodedSentence codedSentence, ExpansionSpan span) {
+    this.sessionId = sessionId;
+    this.span = span;
+    this.codedSentence = codedSentence;
 
-    this.adjectivalTags = new HashSet<>(languageConfig.getStringList("adjectival-tags"));
-    this.coordinationLabels = new HashSet<>(languageConfig.getStringList("coordination-labels"));
-    this.determinentTags = new HashSet<>(languageConfig.getStringList("determinent-tags"));
-    this.lemmaGender = languageConfig.getString("lemma-gender");
-    this.lemmaNumber = languageConfig.getString("lemma-number");
-    this.nominalTags = new HashSet<>(languageConfig.getStringList("nominal-tags"));
-    this.nonStandaloneIfHasDependents = new HashSet<>(languageConfig.getStringList("non-standalone-if-has-dependents"));
-    this.nonStandaloneTags = new HashSet<>(languageConfig.getStringList("non-standalone-tags"));
-    this.prepositionalTags = new HashSet<>(languageConfig.getStringList("prepositional-tags"));
-    this.termStopTags = new HashSet<>(languageConfig.getStringList("term-stop-tags"));
-    this.zeroDepthLabels = new HashSet<>(languageConfig.getStringList("zero-depth-labels"));
+    this.lemmaGender = codedSentence.getProfile().getLemmaGender();
+    this.lemmaNumber = codedSentence.getProfile().getLemmaNumber();
     
     this.node = node;
-    this.lexicon = TalismaneSession.get(sessionId).getMergedLexicon();
+    this.lexiconCache = LexiconCache.getInstance();
   }
 
   public List<Expansion> getChildren() {
     if (this.children == null) {
       children = new ArrayList<>();
       for (DependencyNode child : node.getDependents()) {
-        String posTagCode = child.getPosTaggedToken().getTag().getCode();
-        if (prepositionalTags.contains(posTagCode)) {
+        if (codedSentence.isPrepositional(child.getPosTaggedToken())) {
           if (child.getDependents().size() > 0) {
             DependencyNode realChild = child.getDependents().iterator().next().cloneNode();
-            Expansion realChildExpansion = new Expansion(realChild, sessionId);
+            Expansion realChildExpansion = new Expansion(realChild, sessionId, codedSentence);
             if (realChildExpansion.display() != null && realChildExpansion.display().length() > 0)
-              children.add(new Expansion(realChild, sessionId));
+              children.add(new Expansion(realChild, sessionId, codedSentence));
           }
-        } else if (nominalTags.contains(posTagCode)) {
-          Expansion childExpansion = new Expansion(child, sessionId);
+        } else if (codedSentence.isNominal(child.getPosTaggedToken())) {
+          Expansion childExpansion = new Expansion(child, sessionId, codedSentence);
           if (childExpansion.display() != null && childExpansion.display().length() > 0)
-            children.add(new Expansion(child, sessionId));
+            children.add(new Expansion(child, sessionId, codedSentence));
         }
       }
     }
@@ -98,12 +88,12 @@ public class Expansion {
       if (leftDependents.size() > 0) {
         DependencyNode leftParent = node.cloneNode();
         leftParent.removeNode(leftDependents.get(0));
-        parents.add(new Expansion(leftParent, sessionId));
+        parents.add(new Expansion(leftParent, sessionId, codedSentence));
       }
       if (rightDependents.size() > 0) {
         DependencyNode rightParent = node.cloneNode();
         rightParent.removeNode(rightDependents.get(rightDependents.size() - 1));
-        parents.add(new Expansion(rightParent, sessionId));
+        parents.add(new Expansion(rightParent, sessionId, codedSentence));
       }
     }
     return parents;
@@ -113,11 +103,19 @@ public class Expansion {
     return node;
   }
 
+  /**
+   * The tokens covered by this expansion and its perceived depth.
+   */
+  public ExpansionSpan getSpan() {
+    if (span == null)
+      span = ExpansionSpan.of(node, codedSentence.getProfile().getZeroDepthLabels());
+    return span;
+  }
+
   public String display() {
     if (text == null) {
       DependencyNode startNode = node;
-      String posTagCode = node.getPosTaggedToken().getTag().getCode();
-      if (!(nominalTags.contains(posTagCode))) {
+      if (!codedSentence.isNominal(node.getPosTaggedToken())) {
         return null;
       }
 
@@ -146,21 +144,16 @@ public class Expansion {
         String tokenText = currentToken.getOriginalText();
         if (Character.isUpperCase(tokenText.charAt(0))) {
           // lowercase any known words
-          tokenText = UppercaseSeriesFilter.getKnownWord(sessionId, tokenText);
+          tokenText = lexiconCache.getKnownWord(sessionId, tokenText);
         }
 
         if (lemmatiseHead && posTaggedToken.equals(startNode.getPosTaggedToken())) {
           if (headNounEntry.isPresent()) {
-            List<? extends LexicalEntry> lemmaFormEntries = lexicon.getEntriesMatchingCriteria(headNounEntry.get(), node.getPosTaggedToken().getTag(),
-                null, lemmaNumber);
-            LexicalEntry lemmaFormEntry = null;
-            if (lemmaFormEntries.size() > 0)
-              lemmaFormEntry = lemmaFormEntries.get(0);
-
-            if (lemmaFormEntry != null)
-              tokenText = lemmaFormEntry.getWord();
+            String lemmaForm = lexiconCache.getLemmaForm(sessionId, headNounEntry.get(), node.getPosTaggedToken().getTag(), null, lemmaNumber);
+            if (lemmaForm != null)
+              tokenText = lemmaForm;
           }
-        } else if (lemmatiseHead && adjectivalTags.contains(posTaggedToken.getTag().getCode())) {
+        } else if (lemmatiseHead && codedSentence.isAdjectival(posTaggedToken)) {
 
           boolean lemmatiseModifier = false;
           if (node.getPosTaggedToken().equals(startNode.getParseConfiguration().getHead(posTaggedToken))) {
@@ -171,7 +164,7 @@ public class Expansion {
             DependencyArc arc = startNode.getParseConfiguration().getGoverningDependency(posTaggedToken);
             if (arc != null) {
               PosTaggedToken parent = arc.getHead();
-              while (arc != null && coordinationLabels.contains(arc.getLabel())) {
+              while (arc != null && codedSentence.isCoordination(arc.getDependent())) {
                 arc = startNode.getParseConfiguration().getGoverningDependency(parent);
                 parent = arc.getHead();
               }
@@ -182,14 +175,9 @@ public class Expansion {
           if (lemmatiseModifier) {
             Optional<LexicalEntry> pluralEntry = this.headOption(posTaggedToken.getLexicalEntries());
             if (pluralEntry.isPresent() && !pluralEntry.get().getNumber().contains(lemmaNumber)) {
-              List<? extends LexicalEntry> lemmaFormEntries = lexicon.getEntriesMatchingCriteria(pluralEntry.get(), posTaggedToken.getTag(),
-                  headNounGender, lemmaNumber);
-              LexicalEntry lemmaFormEntry = null;
-              if (lemmaFormEntries.size() > 0)
-                lemmaFormEntry = lemmaFormEntries.get(0);
-
-              if (lemmaFormEntry != null)
-                tokenText = lemmaFormEntry.getWord();
+              String lemmaForm = lexiconCache.getLemmaForm(sessionId, pluralEntry.get(), posTaggedToken.getTag(), headNounGender, lemmaNumber);
+              if (lemmaForm != null)
+                tokenText = lemmaForm;
             }
 
             if (pluralEntry == null) {
@@ -236,24 +224,23 @@ public class Expansion {
     if (this.shouldDisplay(node, depth))
       tokensToDisplay.add(node.getPosTaggedToken());
     for (DependencyNode child : node.getDependents()) {
-      String posTagCode = child.getPosTaggedToken().getTag().getCode();
       int newDepth = depth + 1;
-      if (determinentTags.contains(posTagCode))
+      if (codedSentence.isDeterminent(child.getPosTaggedToken()))
         newDepth = depth;
       this.collectNodesForDisplay(child, tokensToDisplay, newDepth);
     }
   }
 
   boolean shouldDisplay(DependencyNode node, int depth) {
-    String posTagCode = node.getPosTaggedToken().getTag().getCode();
-    if (depth == 1 && determinentTags.contains(posTagCode)) {
+    PosTaggedToken posTaggedToken = node.getPosTaggedToken();
+    if (depth == 1 && codedSentence.isDeterminent(posTaggedToken)) {
       return false;
     }
 
-    int numRealDependents = node.getParseConfiguration().getDependents(node.getPosTaggedToken()).size();
+    int numRealDependents = node.getParseConfiguration().getDependents(posTaggedToken).size();
     int numAttachedDependents = node.getDependents().size();
-    if (numAttachedDependents == 0 && (nonStandaloneTags.contains(posTagCode))
-        || (numRealDependents > 0 && nonStandaloneIfHasDependents.contains(posTagCode))) {
+    if (numAttachedDependents == 0 && codedSentence.isNonStandalone(posTaggedToken)
+        || (numRealDependents > 0 && codedSentence.isNonStandaloneIfHasDependents(posTaggedToken))) {
       return false;
     }
     return true;
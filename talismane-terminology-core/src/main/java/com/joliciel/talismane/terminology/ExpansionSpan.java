@@ -0,0 +1,97 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology;
+
+import com.joliciel.talismane.parser.DependencyNode;
+
+import java.util.Set;
+
+/**
+ * The extent of an {@link Expansion} in its sentence: the first and last
+ * token indexes it covers, the number of tokens it contains and its perceived
+ * depth. Since the dependents of a node cover disjoint sets of tokens, the span
+ * of a node with a new dependent can be calculated from the two spans alone,
+ * without building the node.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public final class ExpansionSpan {
+  private final int firstIndex;
+  private final int lastIndex;
+  private final int tokenCount;
+  private final int perceivedDepth;
+
+  public ExpansionSpan(int firstIndex, int lastIndex, int tokenCount, int perceivedDepth) {
+    this.firstIndex = firstIndex;
+    this.lastIndex = lastIndex;
+    this.tokenCount = tokenCount;
+    this.perceivedDepth = perceivedDepth;
+  }
+
+  /**
+   * Calculate the span of an existing node, by walking through it.
+   */
+  public static ExpansionSpan of(DependencyNode node, Set<String> zeroDepthLabels) {
+    int[] extent = new int[] { Integer.MAX_VALUE, Integer.MIN_VALUE, 0 };
+    collect(node, extent);
+    return new ExpansionSpan(extent[0], extent[1], extent[2], node.getPerceivedDepth(zeroDepthLabels));
+  }
+
+  private static void collect(DependencyNode node, int[] extent) {
+    int index = node.getPosTaggedToken().getIndex();
+    extent[0] = Math.min(extent[0], index);
+    extent[1] = Math.max(extent[1], index);
+    extent[2]++;
+    for (DependencyNode dependent : node.getDependents())
+      collect(dependent, extent);
+  }
+
+  public int getFirstIndex() {
+    return firstIndex;
+  }
+
+  public int getLastIndex() {
+    return lastIndex;
+  }
+
+  /**
+   * The number of tokens in the span, which is smaller than the distance
+   * between the first and last index if there are gaps.
+   */
+  public int getTokenCount() {
+    return tokenCount;
+  }
+
+  public int getPerceivedDepth() {
+    return perceivedDepth;
+  }
+
+  /**
+   * Whether the span covers every token between its first and last index.
+   */
+  public boolean isContiguous() {
+    return lastIndex - firstIndex + 1 == tokenCount;
+  }
+
+  @Override
+  public String toString() {
+    return "ExpansionSpan [" + firstIndex + ", " + lastIndex + "], tokens=" + tokenCount + ", depth=" + perceivedDepth;
+  }
+}
@@ -0,0 +1,249 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology;
+
+import com.joliciel.talismane.TalismaneException;
+import com.joliciel.talismane.parser.ParseConfiguration;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The language-specific tags and labels used for term extraction, read from
+ * the configuration key talismane.terminology.&lt;language&gt;.<br>
+ * A profile is immutable, and is only built once per language, so it can be
+ * shared by all expansions and threads.<br>
+ * Every tag and label in the profile is given its own bit, so that each set is
+ * also available as a bit mask. A sentence is coded against these masks once
+ * by {@link #code(ParseConfiguration)}, after which membership tests don't
+ * involve any string hashing.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public final class LanguageProfile {
+  private static final Map<String, LanguageProfile> profiles = new ConcurrentHashMap<>();
+
+  private final Set<String> adjectivalTags;
+  private final Set<String> coordinationLabels;
+  private final Set<String> determinentTags;
+  private final Set<String> nominalTags;
+  private final Set<String> nonStandaloneIfHasDependents;
+  private final Set<String> nonStandaloneTags;
+  private final Set<String> nonTopLevelLabels;
+  private final Set<String> prepositionalTags;
+  private final Set<String> termStopTags;
+  private final Set<String> zeroDepthLabels;
+  private final String lemmaGender;
+  private final String lemmaNumber;
+
+  private final Map<String, Long> tagBits = new HashMap<>();
+  private final Map<String, Long> labelBits = new HashMap<>();
+
+  final long adjectivalTagMask;
+  final long coordinationLabelMask;
+  final long determinentTagMask;
+  final long nominalTagMask;
+  final long nonStandaloneIfHasDependentsMask;
+  final long nonStandaloneTagMask;
+  final long nonTopLevelLabelMask;
+  final long prepositionalTagMask;
+  final long termStopTagMask;
+
+  /**
+   * The profile for the language given by talismane.terminology.language.
+   */
+  public static LanguageProfile getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  private static final class Holder {
+    private static final LanguageProfile INSTANCE = getInstance(ConfigFactory.load().getString("talismane.terminology.language"));
+  }
+
+  /**
+   * The profile for a given language.
+   */
+  public static LanguageProfile getInstance(String language) {
+    return profiles.computeIfAbsent(language,
+        k -> new LanguageProfile(ConfigFactory.load().getConfig("talismane.terminology").getConfig(k)));
+  }
+
+  public LanguageProfile(Config languageConfig) {
+    this.adjectivalTags = getSet(languageConfig, "adjectival-tags");
+    this.coordinationLabels = getSet(languageConfig, "coordination-labels");
+    this.determinentTags = getSet(languageConfig, "determinent-tags");
+    this.nominalTags = getSet(languageConfig, "nominal-tags");
+    this.nonStandaloneIfHasDependents = getSet(languageConfig, "non-standalone-if-has-dependents");
+    this.nonStandaloneTags = getSet(languageConfig, "non-standalone-tags");
+    this.nonTopLevelLabels = getSet(languageConfig, "non-top-level-labels");
+    this.prepositionalTags = getSet(languageConfig, "prepositional-tags");
+    this.termStopTags = getSet(languageConfig, "term-stop-tags");
+    this.zeroDepthLabels = getSet(languageConfig, "zero-depth-labels");
+    this.lemmaGender = languageConfig.getString("lemma-gender");
+    this.lemmaNumber = languageConfig.getString("lemma-number");
+
+    this.adjectivalTagMask = getMask(adjectivalTags, tagBits);
+    this.determinentTagMask = getMask(determinentTags, tagBits);
+    this.nominalTagMask = getMask(nominalTags, tagBits);
+    this.nonStandaloneIfHasDependentsMask = getMask(nonStandaloneIfHasDependents, tagBits);
+    this.nonStandaloneTagMask = getMask(nonStandaloneTags, tagBits);
+    this.prepositionalTagMask = getMask(prepositionalTags, tagBits);
+    this.termStopTagMask = getMask(termStopTags, tagBits);
+
+    this.coordinationLabelMask = getMask(coordinationLabels, labelBits);
+    this.nonTopLevelLabelMask = getMask(nonTopLevelLabels, labelBits);
+  }
+
+  private static Set<String> getSet(Config config, String path) {
+    return Collections.unmodifiableSet(new HashSet<>(config.getStringList(path)));
+  }
+
+  /**
+   * Get the mask for a set of codes, giving each code not yet seen the next
+   * free bit.
+   */
+  private static long getMask(Set<String> codes, Map<String, Long> bits) {
+    long mask = 0;
+    for (String code : codes) {
+      Long bit = bits.get(code);
+      if (bit == null) {
+        if (bits.size() == Long.SIZE)
+          throw new TalismaneException("A language profile cannot contain more than " + Long.SIZE + " distinct tags or labels");
+        bit = 1L << bits.size();
+        bits.put(code, bit);
+      }
+      mask |= bit;
+    }
+    return mask;
+  }
+
+  /**
+   * The bit for a given tag code, or 0 if the tag isn't in any of the
+   * profile's sets.
+   */
+  long getTagBit(String code) {
+    Long bit = tagBits.get(code);
+    return bit == null ? 0 : bit;
+  }
+
+  /**
+   * The bit for a given dependency label, or 0 if the label isn't in any of
+   * the profile's sets.
+   */
+  long getLabelBit(String label) {
+    if (label == null)
+      return 0;
+    Long bit = labelBits.get(label);
+    return bit == null ? 0 : bit;
+  }
+
+  /**
+   * Code the tags and dependency labels of a parsed sentence against this
+   * profile.
+   */
+  public CodedSentence code(ParseConfiguration parseConfiguration) {
+    return new CodedSentence(this, parseConfiguration);
+  }
+
+  public Set<String> getAdjectivalTags() {
+    return adjectivalTags;
+  }
+
+  /**
+   * Dependency labels representing coordination.
+   */
+  public Set<String> getCoordinationLabels() {
+    return coordinationLabels;
+  }
+
+  public Set<String> getDeterminentTags() {
+    return determinentTags;
+  }
+
+  /**
+   * Tags representing nouns - only noun phrases are extracted.
+   */
+  public Set<String> getNominalTags() {
+    return nominalTags;
+  }
+
+  /**
+   * Tags which are never extracted as terms on their own if they have any
+   * dependents.
+   */
+  public Set<String> getNonStandaloneIfHasDependents() {
+    return nonStandaloneIfHasDependents;
+  }
+
+  /**
+   * Tags which are never extracted as terms on their own.
+   */
+  public Set<String> getNonStandaloneTags() {
+    return nonStandaloneTags;
+  }
+
+  /**
+   * Dependency labels which are never included with a term governor.
+   */
+  public Set<String> getNonTopLevelLabels() {
+    return nonTopLevelLabels;
+  }
+
+  /**
+   * Tags which require an object to be included.
+   */
+  public Set<String> getPrepositionalTags() {
+    return prepositionalTags;
+  }
+
+  /**
+   * Tags which stop the expansion as soon as they are reached.
+   */
+  public Set<String> getTermStopTags() {
+    return termStopTags;
+  }
+
+  /**
+   * Dependency labels which don't add to the term's depth.
+   */
+  public Set<String> getZeroDepthLabels() {
+    return zeroDepthLabels;
+  }
+
+  /**
+   * The lemmatised gender for adjectives.
+   */
+  public String getLemmaGender() {
+    return lemmaGender;
+  }
+
+  /**
+   * The lemmatised number for nouns.
+   */
+  public String getLemmaNumber() {
+    return lemmaNumber;
+  }
+}
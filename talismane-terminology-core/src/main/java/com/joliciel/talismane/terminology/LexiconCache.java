@@ -0,0 +1,256 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology;
+
+import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.lexicon.LexicalEntry;
+import com.joliciel.talismane.posTagger.PosTag;
+import com.joliciel.talismane.tokeniser.filters.UppercaseSeriesFilter;
+import com.typesafe.config.ConfigFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A bounded, least-recently-used cache for the lexicon lookups made when
+ * displaying an expansion: the form of a lexical entry with a given gender
+ * and number, and the known form of a capitalised word. Both are pure
+ * functions of their arguments, and the same few thousand words account for
+ * most lookups, so the cache is shared by all expansions, in all sentences
+ * and threads. Lookups which find nothing are cached as well.<br>
+ * Each kind of lookup is held in a {@link BoundedCache}, which threads can
+ * read without taking a lock.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public final class LexiconCache {
+  private final int maxSize;
+  private final BoundedCache<LemmaFormKey, Optional<String>> lemmaForms;
+  private final BoundedCache<KnownWordKey, Optional<String>> knownWords;
+  private final LemmaFormFinder lemmaFormFinder;
+  private final KnownWordFinder knownWordFinder;
+
+  /**
+   * The cache shared by all expansions, whose size is given by
+   * talismane.terminology.lexicon-cache-size.
+   */
+  public static LexiconCache getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  private static final class Holder {
+    private static final LexiconCache INSTANCE = new LexiconCache(ConfigFactory.load().getInt("talismane.terminology.lexicon-cache-size"));
+  }
+
+  /**
+   * @param maxSize
+   *          the maximum number of lemma forms, and of known words, to keep.
+   *          If 0, every lookup goes straight to the lexicon.
+   */
+  public LexiconCache(int maxSize) {
+    this(maxSize, LexiconCache::findLemmaForm, UppercaseSeriesFilter::getKnownWord);
+  }
+
+  LexiconCache(int maxSize, LemmaFormFinder lemmaFormFinder, KnownWordFinder knownWordFinder) {
+    this.maxSize = maxSize;
+    this.lemmaFormFinder = lemmaFormFinder;
+    this.knownWordFinder = knownWordFinder;
+    this.lemmaForms = new BoundedCache<>(maxSize);
+    this.knownWords = new BoundedCache<>(maxSize);
+  }
+
+  /**
+   * The form of a lexical entry with a given tag, gender and number, or null
+   * if the lexicon doesn't contain one.
+   * 
+   * @param gender
+   *          the gender required, or null for any gender
+   */
+  public String getLemmaForm(String sessionId, LexicalEntry entry, PosTag posTag, String gender, String number) {
+    if (maxSize == 0)
+      return lemmaFormFinder.find(sessionId, entry, posTag, gender, number);
+
+    LemmaFormKey key = new LemmaFormKey(sessionId, entry, posTag.getCode(), gender, number);
+    Optional<String> lemmaForm = lemmaForms.get(key);
+    if (lemmaForm == null) {
+      lemmaForm = Optional.ofNullable(lemmaFormFinder.find(sessionId, entry, posTag, gender, number));
+      lemmaForms.put(key, lemmaForm);
+    }
+    return lemmaForm.orElse(null);
+  }
+
+  private static String findLemmaForm(String sessionId, LexicalEntry entry, PosTag posTag, String gender, String number) {
+    List<? extends LexicalEntry> lemmaFormEntries = TalismaneSession.get(sessionId).getMergedLexicon().getEntriesMatchingCriteria(entry, posTag, gender,
+        number);
+    if (lemmaFormEntries.size() > 0)
+      return lemmaFormEntries.get(0).getWord();
+    return null;
+  }
+
+  /**
+   * The known form of a word, as given by
+   * {@link UppercaseSeriesFilter#getKnownWord(String, String)}.
+   */
+  public String getKnownWord(String sessionId, String word) {
+    if (maxSize == 0)
+      return knownWordFinder.find(sessionId, word);
+
+    KnownWordKey key = new KnownWordKey(sessionId, word);
+    Optional<String> knownWord = knownWords.get(key);
+    if (knownWord == null) {
+      knownWord = Optional.ofNullable(knownWordFinder.find(sessionId, word));
+      knownWords.put(key, knownWord);
+    }
+    return knownWord.orElse(null);
+  }
+
+  /**
+   * The maximum number of lemma forms, and of known words, held in the cache.
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public int getLemmaFormCount() {
+    return lemmaForms.getSize();
+  }
+
+  public long getLemmaFormHitCount() {
+    return lemmaForms.getHitCount();
+  }
+
+  public long getLemmaFormMissCount() {
+    return lemmaForms.getMissCount();
+  }
+
+  /**
+   * The proportion of lemma form lookups found in the cache, or 0 if there
+   * haven't been any lookups yet.
+   */
+  public double getLemmaFormHitRate() {
+    return lemmaForms.getHitRate();
+  }
+
+  public int getKnownWordCount() {
+    return knownWords.getSize();
+  }
+
+  public long getKnownWordHitCount() {
+    return knownWords.getHitCount();
+  }
+
+  public long getKnownWordMissCount() {
+    return knownWords.getMissCount();
+  }
+
+  /**
+   * The proportion of known word lookups found in the cache, or 0 if there
+   * haven't been any lookups yet.
+   */
+  public double getKnownWordHitRate() {
+    return knownWords.getHitRate();
+  }
+
+  /**
+   * The number of lemma forms and known words removed from the cache to make
+   * room for new ones.
+   */
+  public long getEvictionCount() {
+    return lemmaForms.getEvictionCount() + knownWords.getEvictionCount();
+  }
+
+  @Override
+  public String toString() {
+    return "LexiconCache [maxSize=" + maxSize + ", lemmaForms=" + lemmaForms + ", knownWords=" + knownWords + "]";
+  }
+
+  /**
+   * Finds the form of a lexical entry, in the lexicon by default.
+   */
+  interface LemmaFormFinder {
+    String find(String sessionId, LexicalEntry entry, PosTag posTag, String gender, String number);
+  }
+
+  /**
+   * Finds the known form of a word, using the {@link UppercaseSeriesFilter}
+   * by default.
+   */
+  interface KnownWordFinder {
+    String find(String sessionId, String word);
+  }
+
+  private static final class LemmaFormKey {
+    private final String sessionId;
+    private final LexicalEntry entry;
+    private final String posTag;
+    private final String gender;
+    private final String number;
+
+    private LemmaFormKey(String sessionId, LexicalEntry entry, String posTag, String gender, String number) {
+      this.sessionId = sessionId;
+      this.entry = entry;
+      this.posTag = posTag;
+      this.gender = gender;
+      this.number = number;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof LemmaFormKey))
+        return false;
+      LemmaFormKey other = (LemmaFormKey) o;
+      return sessionId.equals(other.sessionId) && entry.equals(other.entry) && posTag.equals(other.posTag) && Objects.equals(gender, other.gender)
+          && Objects.equals(number, other.number);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(sessionId, entry, posTag, gender, number);
+    }
+  }
+
+  private static final class KnownWordKey {
+    private final String sessionId;
+    private final String word;
+
+    private KnownWordKey(String sessionId, String word) {
+      this.sessionId = sessionId;
+      this.word = word;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof KnownWordKey))
+        return false;
+      KnownWordKey other = (KnownWordKey) o;
+      return sessionId.equals(other.sessionId) && word.equals(other.word);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * sessionId.hashCode() + word.hashCode();
+    }
+  }
+}
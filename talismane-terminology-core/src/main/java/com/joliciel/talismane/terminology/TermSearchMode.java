@@ -0,0 +1,40 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology;
+
+/**
+ * How the search text is matched against a term's text when finding terms.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public enum TermSearchMode {
+  /**
+   * The term starts with the search text.
+   */
+  PREFIX,
+  /**
+   * The term contains the search text anywhere.
+   */
+  SUBSTRING,
+  /**
+   * The term is similar to the search text, based on the trigrams they share.
+   */
+  SIMILARITY
+}
@@ -18,8 +18,11 @@
 //////////////////////////////////////////////////////////////////////////////
 package com.joliciel.talismane.terminology;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * A collection of "terms" extracted from a given corpus.
@@ -27,25 +30,101 @@ import java.util.Set;
  *
  */
 public interface TerminologyBase {
-  public List<Term> findTerms(final int frequencyThreshold,
+  /**
+   * Find terms starting with the search text, if any.
+   */
+  public default List<Term> findTerms(final int frequencyThreshold,
       final String searchText, final int maxLexicalWords,
-      final Boolean marked);
+      final Boolean marked) {
+    return this.findTerms(frequencyThreshold, searchText, TermSearchMode.PREFIX, maxLexicalWords, marked);
+  }
+
+  /**
+   * Find terms ordered by descending frequency and then by text.
+   * 
+   * @param searchMode
+   *          how the search text, if any, is matched against each term
+   */
+  public List<Term> findTerms(final int frequencyThreshold,
+      final String searchText, final TermSearchMode searchMode,
+      final int maxLexicalWords, final Boolean marked);
+
+  /**
+   * Like {@link #findTerms(int, String, TermSearchMode, int, Boolean)}, but
+   * passes each term to a consumer as soon as it is read, rather than building
+   * the whole list in memory.
+   */
+  public void findTerms(final int frequencyThreshold,
+      final String searchText, final TermSearchMode searchMode,
+      final int maxLexicalWords, final Boolean marked,
+      Consumer<Term> termConsumer);
+
+  /**
+   * Get a single page of the terms returned by
+   * {@link #findTerms(int, String, TermSearchMode, int, Boolean)}.
+   *
+   * @param after
+   *          the last term of the previous page, or null for the first page
+   * @param pageSize
+   *          the maximum number of terms to return
+   */
+  public List<Term> findTerms(final int frequencyThreshold,
+      final String searchText, final TermSearchMode searchMode,
+      final int maxLexicalWords, final Boolean marked, Term after,
+      int pageSize);
 
   /**
    * Get a term corresponding to a particular string.
    */
   public Term findTerm(String text);
+
+  /**
+   * Get a term corresponding to a particular string, without calculating its
+   * frequency, head count or expansion count. Only the term's identity and
+   * stored attributes are resolved, making this suitable for writing new
+   * contexts and links rather than for display. If the term doesn't exist
+   * yet, a new term is returned.
+   */
+  public Term resolveTerm(String text);
   
   public Context findContext(Term term, String fileName, int lineNumber, int columnNumber);
+
+  /**
+   * Create a new context for a term, without checking whether it already
+   * exists in the datastore.
+   */
+  public Context newContext(Term term, String fileName, int lineNumber, int columnNumber);
   
   /**
    * Store the term in the datastore.
    */
   public void storeTerm(Term term);
+
+  /**
+   * Store several terms in the datastore, along with any heads and expansions
+   * added to them.
+   */
+  public void storeTerms(Collection<Term> terms);
   
   public void storeContext(Context context);
+
+  /**
+   * Store several contexts in the datastore. Any context already stored for
+   * the same term at the same location is skipped.
+   */
+  public void storeContexts(Collection<Context> contexts);
   
+  /**
+   * Commit all writes since the last commit, if the datastore is
+   * transactional.
+   */
   public void commit();
+
+  /**
+   * Discard all writes since the last commit, if the datastore is
+   * transactional.
+   */
+  public void rollback();
   
   /**
    * Load the parents of a given term from the datastore.
@@ -67,4 +146,16 @@ public interface TerminologyBase {
    * Load the contexts of a given term from the datastore.
    */
   public List<Context> getContexts(Term term);
+
+  /**
+   * Load the contexts of several terms from the datastore at once.
+   * 
+   * @param maxContextsPerTerm
+   *          the maximum number of contexts to load for each term, or 0 to
+   *          load all of them
+   * @return the contexts of each term, in the same order as
+   *         {@link #getContexts(Term)}. Terms without any context are not
+   *         included.
+   */
+  public Map<Term, List<Context>> getContexts(Collection<Term> terms, int maxContextsPerTerm);
 }
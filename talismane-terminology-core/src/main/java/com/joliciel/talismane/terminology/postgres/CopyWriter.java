@@ -0,0 +1,113 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology.postgres;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Builds rows in the PostgreSQL COPY text format, and streams them to the
+ * server in a single COPY ... FROM STDIN statement.
+ *
+ * @author Assaf Urieli
+ *
+ */
+class CopyWriter {
+  private final StringBuilder rows = new StringBuilder();
+  private boolean startOfRow = true;
+  private int rowCount = 0;
+
+  CopyWriter add(int value) {
+    this.startField();
+    rows.append(value);
+    return this;
+  }
+
+  CopyWriter add(boolean value) {
+    this.startField();
+    rows.append(value ? 't' : 'f');
+    return this;
+  }
+
+  CopyWriter add(String value) {
+    this.startField();
+    if (value == null) {
+      rows.append("\\N");
+      return this;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '\\':
+        rows.append("\\\\");
+        break;
+      case '\t':
+        rows.append("\\t");
+        break;
+      case '\n':
+        rows.append("\\n");
+        break;
+      case '\r':
+        rows.append("\\r");
+        break;
+      default:
+        rows.append(c);
+      }
+    }
+    return this;
+  }
+
+  void endRow() {
+    rows.append('\n');
+    startOfRow = true;
+    rowCount++;
+  }
+
+  int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Stream all rows to the server.
+   *
+   * @param sql
+   *          a COPY ... FROM STDIN statement, whose columns are in the same
+   *          order as the fields added to each row
+   * @return the number of rows copied
+   */
+  long copyIn(Connection connection, String sql) throws SQLException {
+    CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+    try {
+      return copyManager.copyIn(sql, new StringReader(rows.toString()));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void startField() {
+    if (!startOfRow)
+      rows.append('\t');
+    startOfRow = false;
+  }
+}
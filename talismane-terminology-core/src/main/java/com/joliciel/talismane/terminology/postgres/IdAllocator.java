@@ -0,0 +1,112 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology.postgres;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out ids from a database sequence, reserving them a block at a time.
+ * <br/>
+ * The block size is the sequence's increment: each call to nextval returning
+ * <i>n</i> reserves the ids <i>n</i> to <i>n + increment - 1</i>, which are
+ * then handed out from memory. A sequence with an increment of 1 therefore
+ * behaves exactly as if nextval were called for each id.
+ *
+ * @author Assaf Urieli
+ *
+ */
+class IdAllocator {
+  private static final Logger LOG = LoggerFactory.getLogger(IdAllocator.class);
+
+  private final DataSource dataSource;
+  private final String sequenceName;
+
+  private int blockSize = 0;
+  private int nextId = 0;
+  private int remaining = 0;
+
+  IdAllocator(DataSource dataSource, String sequenceName) {
+    this.dataSource = dataSource;
+    this.sequenceName = sequenceName;
+  }
+
+  synchronized int nextId() {
+    return this.nextIds(1).get(0);
+  }
+
+  /**
+   * Get a number of ids, reserving as many new blocks as required in a single
+   * round trip.
+   */
+  synchronized List<Integer> nextIds(int count) {
+    List<Integer> ids = new ArrayList<>(count);
+    this.takeFromBlock(ids, count);
+
+    if (ids.size() < count) {
+      int blockSize = this.getBlockSize();
+      int missing = count - ids.size();
+      int blockCount = (missing + blockSize - 1) / blockSize;
+
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(dataSource);
+      String sql = "SELECT nextval('" + sequenceName + "') FROM generate_series(1, :block_count)";
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("block_count", blockCount);
+
+      LOG.trace(sql);
+      PostGresTerminologyBase.LogParameters(paramSource);
+      List<Integer> blockStarts = jt.queryForList(sql, paramSource, Integer.class);
+      for (int blockStart : blockStarts) {
+        nextId = blockStart;
+        remaining = blockSize;
+        this.takeFromBlock(ids, count);
+      }
+    }
+    return ids;
+  }
+
+  private void takeFromBlock(List<Integer> ids, int count) {
+    while (ids.size() < count && remaining > 0) {
+      ids.add(nextId++);
+      remaining--;
+    }
+  }
+
+  int getBlockSize() {
+    if (blockSize == 0) {
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(dataSource);
+      String sql = "SELECT increment_by FROM pg_sequences"
+          + " WHERE schemaname = current_schema()"
+          + " AND sequencename = :sequence_name";
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("sequence_name", sequenceName);
+
+      LOG.trace(sql);
+      PostGresTerminologyBase.LogParameters(paramSource);
+      blockSize = Math.max(1, jt.queryForObject(sql, paramSource, Integer.class));
+    }
+    return blockSize;
+  }
+}
@@ -20,6 +20,7 @@ package com.joliciel.talismane.terminology.postgres;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
@@ -37,6 +38,8 @@ public class PostGresTerm implements Term, Serializable, Comparable<Term> {
   private String text;
   private PersistentSet<Term> heads;
   private PersistentSet<Term> expansions;
+  private Set<Term> headsAdded = new TreeSet<Term>();
+  private Set<Term> expansionsAdded = new TreeSet<Term>();
   private Set<Term> parents;
   private List<Context> contexts = null;
   private int frequency = 0;
@@ -67,6 +70,11 @@ public class PostGresTerm implements Term, Serializable, Comparable<Term> {
       this.heads = new PersistentSetImpl<Term>(new TreeSet<Term>());
       if (!this.isNew())
         this.heads.addAllFromDB(this.terminologyBase.getHeads(this));
+      for (Term term : this.headsAdded) {
+        if (this.heads.add(term))
+          this.setHeadCount(this.getHeadCount()+1);
+      }
+      this.headsAdded.clear();
     }
     return heads;
   }
@@ -81,6 +89,11 @@ public class PostGresTerm implements Term, Serializable, Comparable<Term> {
       this.expansions = new PersistentSetImpl<Term>(new TreeSet<Term>());
       if (!this.isNew())
         this.expansions.addAllFromDB(this.terminologyBase.getExpansions(this));
+      for (Term term : this.expansionsAdded) {
+        if (this.expansions.add(term))
+          this.setExpansionCount(this.getExpansionCount()+1);
+      }
+      this.expansionsAdded.clear();
     }
     return expansions;
   }
@@ -92,14 +105,6 @@ public class PostGresTerm implements Term, Serializable, Comparable<Term> {
     return parents;
   }  
 
-  public Set<Term> getParentsInternal() {
-    return this.parents;
-  }
-  
-  public void setParentsInternal(Set<Term> parents) {
-    this.parents = parents;
-  }
-
   public List<Context> getContexts() {
     if (this.contexts==null) {
       if (this.isNew()) {
@@ -116,14 +121,63 @@ public class PostGresTerm implements Term, Serializable, Comparable<Term> {
     return (this.text.compareTo(o.getText()));
   }
   
+  /**
+   * If this term's heads haven't been loaded, the head is only recorded as
+   * added, without loading the existing heads. It will be written with an
+   * insert which ignores heads already stored, and the head count is only
+   * updated once the database has said whether the head was new.
+   */
   public void addHead(Term head) {
-    boolean success = this.getHeads().add(head);
-    if (success) this.setHeadCount(this.getHeadCount()+1);
+    if (this.heads==null)
+      this.headsAdded.add(head);
+    else if (this.heads.add(head))
+      this.setHeadCount(this.getHeadCount()+1);
   }
   
+  /**
+   * If this term's expansions haven't been loaded, the expansion is only
+   * recorded as added, without loading the existing expansions. It will be
+   * written with an insert which ignores expansions already stored, and the
+   * expansion count is only updated once the database has said whether the
+   * expansion was new.
+   */
   public void addExpansion(Term expansion) {
-    boolean success = this.getExpansions().add(expansion);
-    if (success) this.setExpansionCount(this.getExpansionCount()+1);
+    if (this.expansions==null)
+      this.expansionsAdded.add(expansion);
+    else if (this.expansions.add(expansion))
+      this.setExpansionCount(this.getExpansionCount()+1);
+  }
+
+  /**
+   * Heads added since this term was last saved.
+   */
+  Set<Term> getHeadsAdded() {
+    Set<Term> added = new LinkedHashSet<Term>(this.headsAdded);
+    if (this.heads!=null)
+      added.addAll(this.heads.getItemsAdded());
+    return added;
+  }
+
+  /**
+   * Expansions added since this term was last saved.
+   */
+  Set<Term> getExpansionsAdded() {
+    Set<Term> added = new LinkedHashSet<Term>(this.expansionsAdded);
+    if (this.expansions!=null)
+      added.addAll(this.expansions.getItemsAdded());
+    return added;
+  }
+
+  void cleanSlateHeads() {
+    this.headsAdded.clear();
+    if (this.heads!=null)
+      this.heads.cleanSlate();
+  }
+
+  void cleanSlateExpansions() {
+    this.expansionsAdded.clear();
+    if (this.expansions!=null)
+      this.expansions.cleanSlate();
   }
   
   public void addContext(Context context) {
@@ -140,11 +194,13 @@ public class PostGresTerm implements Term, Serializable, Comparable<Term> {
     this.text = text;
   }
   
+  /**
+   * The frequency, like the head and expansion counts, is calculated from
+   * other tables and is not stored with the term, so setting it doesn't make
+   * the term dirty.
+   */
   public void setFrequency(int frequency) {
-    if (this.frequency!=frequency) {
-      this.frequency = frequency;
-      this.dirty = true;
-    }
+    this.frequency = frequency;
   }
 
   @Override
@@ -196,10 +252,7 @@ public class PostGresTerm implements Term, Serializable, Comparable<Term> {
   }
 
   public void setExpansionCount(int expansionCount) {
-    if (this.expansionCount!=expansionCount) {
-      this.expansionCount = expansionCount;
-      this.dirty = true;
-    }
+    this.expansionCount = expansionCount;
   }
   
   public int getHeadCount() {
@@ -207,10 +260,7 @@ public class PostGresTerm implements Term, Serializable, Comparable<Term> {
   }
 
   public void setHeadCount(int headCount) {
-    if (this.headCount!=headCount) {
-      this.headCount = headCount;
-      this.dirty = true;
-    }
+    this.headCount = headCount;
   }
   
   public void save() {
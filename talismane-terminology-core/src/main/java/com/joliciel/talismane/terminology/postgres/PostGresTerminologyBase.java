@@ -19,9 +19,11 @@
 package com.joliciel.talismane.terminology.postgres;
 
 import com.joliciel.talismane.TalismaneException;
+import com.joliciel.talismane.terminology.AsyncTerminologyBase;
 import com.joliciel.talismane.terminology.Context;
 import com.joliciel.talismane.terminology.Term;
 import com.joliciel.talismane.terminology.TermFrequencyComparator;
+import com.joliciel.talismane.terminology.TermSearchMode;
 import com.joliciel.talismane.terminology.TerminologyBase;
 import com.joliciel.talismane.utils.DaoUtils;
 import com.typesafe.config.Config;
@@ -32,37 +34,176 @@ import org.apache.commons.collections4.ListUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.support.rowset.ResultSetWrappingSqlRowSet;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
-
-public class PostGresTerminologyBase implements TerminologyBase {
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class PostGresTerminologyBase implements TerminologyBase, AsyncTerminologyBase, AutoCloseable {
   private static final Logger LOG = LoggerFactory.getLogger(PostGresTerminologyBase.class);
+  private static final long CLOSE_TIMEOUT_SECONDS = 10;
 
   private DataSource dataSource;
+  private DataSource readDataSource;
+  private final long primaryAfterWriteMillis;
+  private volatile long lastWriteTime = 0;
 
   private static final String SELECT_TERM_ONLY = "term_id, term_marked, term_text, term_lexical_words";
-  private static final String SELECT_TERM = SELECT_TERM_ONLY + ", count(context_id) AS term_frequency";
+  private static final String SELECT_TERM = SELECT_TERM_ONLY
+      + ", COALESCE(stats_frequency, 0) AS term_frequency"
+      + ", COALESCE(stats_head_count, 0) AS term_head_count"
+      + ", COALESCE(stats_expansion_count, 0) AS term_expansion_count";
+  private static final String SELECT_TERM_WITHOUT_STATS = SELECT_TERM_ONLY
+      + ", 0 AS term_frequency, 0 AS term_head_count, 0 AS term_expansion_count";
   private static final String SELECT_CONTEXT = "context_id, context_start_row, context_start_column, context_end_row, context_end_column, context_text, context_file_id, context_term_id, context_project_id";
 
-  private Map<String, Integer> filenameMap = new HashMap<>();
-  private Map<Integer, String> fileIdMap = new HashMap<>();
+  private Map<String, Integer> filenameMap = new ConcurrentHashMap<>();
+  private Map<Integer, String> fileIdMap = new ConcurrentHashMap<>();
 
   private String projectCode;
-  private int projectId;
+  private volatile int projectId;
+
+  private final boolean bulkIngest;
+  private final int fetchSize;
+
+  /**
+   * The maximum number of rows inserted by a single statement.
+   */
+  private static final int INSERT_BATCH_SIZE = 10000;
+
+  /**
+   * Rows are always written in the order of their unique key, so that
+   * concurrent transactions writing the same rows lock them in the same order
+   * rather than deadlocking.
+   */
+  private static final Comparator<PostGresTerm> TERM_KEY_ORDER = Comparator.comparing(PostGresTerm::getText);
+  private static final Comparator<PostGresContext> CONTEXT_KEY_ORDER = Comparator.comparingInt(PostGresContext::getFileId)
+      .thenComparingInt(PostGresContext::getTermId)
+      .thenComparingInt(PostGresContext::getLineNumber)
+      .thenComparingInt(PostGresContext::getColumnNumber);
+  private static final Comparator<int[]> LINK_KEY_ORDER = Comparator.<int[]> comparingInt(link -> link[0])
+      .thenComparingInt(link -> link[1]);
+
+  private final IdAllocator termIdAllocator;
+  private final IdAllocator contextIdAllocator;
+  private final IdAllocator fileIdAllocator;
+  private final IdAllocator projectIdAllocator;
+
+  private final TermCache termCache;
+
+  private final DataSourceTransactionManager transactionManager;
+  private volatile TransactionStatus transaction = null;
+
+  private final ExecutorService asyncExecutor;
+
+  private final TerminologyMetrics metrics = new TerminologyMetrics();
 
   public PostGresTerminologyBase(String projectCode) {
+    this(projectCode, ConfigFactory.load().getConfig("talismane.terminology.jdbc"));
+  }
+
+  /**
+   * @param config
+   *          the talismane.terminology.jdbc configuration
+   */
+  PostGresTerminologyBase(String projectCode, Config config) {
     this.projectCode = projectCode;
 
-    Config config = ConfigFactory.load().getConfig("talismane.terminology.jdbc");
-    
+    this.dataSource = buildDataSource(config, "HikariPool-terminology", false, metrics);
+
+    // the read pool's settings default to the primary pool's settings
+    Config readConfig = config.getConfig("read").withFallback(config);
+    if (config.hasPath("read.url"))
+      this.readDataSource = buildDataSource(readConfig, "HikariPool-terminology-read", true, metrics);
+    else
+      this.readDataSource = this.dataSource;
+    this.primaryAfterWriteMillis = readConfig.getDuration("primary-after-write").toMillis();
+
+    this.bulkIngest = config.getBoolean("bulk-ingest");
+    this.fetchSize = config.getInt("fetch-size");
+
+    this.termIdAllocator = new IdAllocator(dataSource, "seq_term_id");
+    this.contextIdAllocator = new IdAllocator(dataSource, "seq_context_id");
+    this.fileIdAllocator = new IdAllocator(dataSource, "seq_file_id");
+    this.projectIdAllocator = new IdAllocator(dataSource, "seq_project_id");
+
+    int termCacheSize = config.getInt("term-cache-size");
+    this.termCache = termCacheSize > 0 ? new TermCache(termCacheSize) : null;
+    this.metrics.setTermCache(termCache);
+    if (config.getBoolean("register-mbeans"))
+      this.metrics.register(projectCode);
+
+    boolean transactional = config.getBoolean("transactional");
+    this.transactionManager = transactional ? new DataSourceTransactionManager(dataSource) : null;
+
+    // asynchronous reads never need more threads than there are connections
+    int asyncThreads = config.getInt("max-pool-size");
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(asyncThreads, asyncThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+      Thread thread = new Thread(r, "terminology-async-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.allowCoreThreadTimeOut(true);
+    this.asyncExecutor = executor;
+  }
+
+  /**
+   * Stop the asynchronous read threads, giving any reads in progress a few
+   * seconds to complete, and then close the connection pools. Any
+   * uncommitted writes are rolled back. The terminology base can't be used
+   * once it has been closed.
+   */
+  @Override
+  public void close() {
+    asyncExecutor.shutdown();
+    try {
+      if (!asyncExecutor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        asyncExecutor.shutdownNow();
+    } catch (InterruptedException e) {
+      asyncExecutor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+
+    if (transaction != null) {
+      LOG.warn("Closing terminology base with uncommitted writes, rolling back");
+      this.rollback();
+    }
+
+    if (readDataSource != dataSource && readDataSource instanceof HikariDataSource)
+      ((HikariDataSource) readDataSource).close();
+    if (dataSource instanceof HikariDataSource)
+      ((HikariDataSource) dataSource).close();
+
+    metrics.unregister();
+  }
+
+  private static HikariDataSource buildDataSource(Config config, String poolName, boolean readOnly, TerminologyMetrics metrics) {
     HikariConfig hikariConfig = new HikariConfig();
     hikariConfig.setDriverClassName(config.getString("driver-class-name"));
     hikariConfig.setJdbcUrl(config.getString("url"));
@@ -73,325 +214,589 @@ public class PostGresTerminologyBase implements TerminologyBase {
     hikariConfig.setIdleTimeout(config.getDuration("idle-timeout").toMillis());
     hikariConfig.setMinimumIdle(config.getInt("min-idle"));
     hikariConfig.setMaxLifetime(config.getDuration("max-lifetime").toMillis());
-    hikariConfig.setPoolName("HikariPool-terminology");
+    hikariConfig.setPoolName(poolName);
+    hikariConfig.setReadOnly(readOnly);
+    hikariConfig.setMetricsTrackerFactory(metrics);
     hikariConfig.setConnectionTestQuery("SELECT * FROM project;");
-    
-    this.dataSource = new HikariDataSource(hikariConfig);
+    hikariConfig.addDataSourceProperty("reWriteBatchedInserts", config.getBoolean("rewrite-batched-inserts"));
+
+    return new HikariDataSource(hikariConfig);
   }
 
   @Override
-  public List<Term> findTerms(int frequencyThreshold, String searchText, final int maxLexicalWords, Boolean marked) {
-    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
-    String sql = "SELECT " + SELECT_TERM
-        + " FROM term"
-        + " INNER JOIN context ON context_term_id = term_id"
-        + " WHERE context_project_id = :term_project_id";
+  public List<Term> findTerms(int frequencyThreshold, String searchText, TermSearchMode searchMode, final int maxLexicalWords,
+      Boolean marked) {
+    List<Term> terms = new ArrayList<>();
+    this.findTerms(frequencyThreshold, searchText, searchMode, maxLexicalWords, marked, terms::add);
+    return terms;
+  }
+
+  /**
+   * Terms are read through a server-side cursor, fetching
+   * talismane.terminology.jdbc.fetch-size rows at a time. Since PostgreSQL only
+   * uses a cursor inside a transaction, the query runs in a read-only
+   * transaction, unless a transaction is already in progress.
+   */
+  @Override
+  public void findTerms(int frequencyThreshold, String searchText, TermSearchMode searchMode, final int maxLexicalWords,
+      Boolean marked, Consumer<Term> termConsumer) {
+    try (TerminologyMetrics.Timer timer = metrics.time("findTerms")) {
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      String sql = this.getFindTermsQuery(frequencyThreshold, searchText, searchMode, maxLexicalWords, marked, null, paramSource);
+
+      LOG.trace(sql);
+      LogParameters(paramSource);
+
+      JdbcTemplate jdbcTemplate = new JdbcTemplate(this.getReadDataSource());
+      jdbcTemplate.setFetchSize(fetchSize);
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(jdbcTemplate);
+      TermMapper termMapper = new TermMapper();
+
+      TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(this.getReadDataSource()));
+      transactionTemplate.setReadOnly(true);
+      transactionTemplate.execute(status -> {
+        jt.query(sql, paramSource, (RowCallbackHandler) rs -> {
+          timer.addRow();
+          termConsumer.accept(termMapper.mapRow(rs, rs.getRow()));
+        });
+        return null;
+      });
+    }
+  }
+
+  /**
+   * Pages are read by seeking directly to the position following the previous
+   * page's last term in the (project, frequency, text) index, so that the cost
+   * of fetching a page doesn't depend on how many pages precede it.
+   */
+  @Override
+  public List<Term> findTerms(int frequencyThreshold, String searchText, TermSearchMode searchMode, final int maxLexicalWords,
+      Boolean marked, Term after, int pageSize) {
+    try (TerminologyMetrics.Timer timer = metrics.time("findTermsPage")) {
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      String sql = this.getFindTermsQuery(frequencyThreshold, searchText, searchMode, maxLexicalWords, marked, after, paramSource);
+      sql += " LIMIT :page_size";
+      paramSource.addValue("page_size", pageSize);
+
+      LOG.trace(sql);
+      LogParameters(paramSource);
+
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getReadDataSource());
+      List<Term> terms = jt.query(sql, paramSource, new TermMapper());
+      timer.setRows(terms.size());
+      return terms;
+    }
+  }
+
+  /**
+   * Build the query for findTerms, ordered by descending frequency and then
+   * text, and add its parameters to the parameter source.
+   *
+   * @param after
+   *          if not null, only terms following this one in the ordering are
+   *          returned
+   */
+  private String getFindTermsQuery(int frequencyThreshold, String searchText, TermSearchMode searchMode, final int maxLexicalWords,
+      Boolean marked, Term after, MapSqlParameterSource paramSource) {
+    String searchCondition = "";
+    if (searchText != null && searchText.length() > 0) {
+      switch (searchMode) {
+      case SUBSTRING:
+        searchCondition = " AND term_text LIKE :term_text";
+        paramSource.addValue("term_text", "%" + searchText + "%");
+        break;
+      case SIMILARITY:
+        // uses the pg_trgm similarity threshold, 0.3 by default
+        searchCondition = " AND term_text % :term_text";
+        paramSource.addValue("term_text", searchText);
+        break;
+      case PREFIX:
+      default:
+        searchCondition = " AND term_text LIKE :term_text";
+        paramSource.addValue("term_text", searchText + "%");
+        break;
+      }
+    }
+
+    String keyset = " AND (stats_frequency < :after_frequency"
+        + " OR (stats_frequency = :after_frequency AND stats_term_text > :after_text))";
+
+    String sql;
     if (marked != null && marked) {
-      sql += " AND term_marked = :term_marked";
-      if (searchText != null && searchText.length() > 0)
-        sql += " AND term_text LIKE :term_text";
-      sql += " GROUP BY " + SELECT_TERM_ONLY;
+      // a marked term is kept if it, or any of its ancestors in the project,
+      // reaches the frequency threshold
+      sql = "WITH RECURSIVE ancestors (marked_term_id, ancestor_id, ancestor_frequency) AS ("
+          + " SELECT term_id, term_id, stats_frequency FROM term"
+          + " INNER JOIN term_stats ON stats_term_id = term_id"
+          + " WHERE stats_project_id = :term_project_id"
+          + " AND term_marked = :term_marked";
+      sql += searchCondition;
+      if (after != null)
+        sql += keyset;
+      sql += " UNION"
+          + " SELECT marked_term_id, termexp_term_id, parent_stats.stats_frequency FROM ancestors"
+          + " INNER JOIN term_expansions ON termexp_expansion_id = ancestor_id"
+          + " INNER JOIN term_stats parent_stats ON parent_stats.stats_term_id = termexp_term_id"
+          + " AND parent_stats.stats_project_id = :term_project_id"
+          + ")"
+          + " SELECT " + SELECT_TERM
+          + " FROM ancestors"
+          + " INNER JOIN term ON term_id = marked_term_id"
+          + " INNER JOIN term_stats ON stats_term_id = term_id"
+          + " WHERE stats_project_id = :term_project_id"
+          + " GROUP BY " + SELECT_TERM_ONLY + ", stats_frequency, stats_head_count, stats_expansion_count, stats_term_text";
+      if (frequencyThreshold > 0)
+        sql += " HAVING max(ancestor_frequency) >= :term_frequency";
     } else {
-      if (searchText != null && searchText.length() > 0)
-        sql += " AND term_text LIKE :term_text";
-      if (marked != null && marked)
-        sql += " AND term_marked = :term_marked";
+      sql = "SELECT " + SELECT_TERM
+          + " FROM term"
+          + " INNER JOIN term_stats ON stats_term_id = term_id"
+          + " WHERE stats_project_id = :term_project_id";
+      sql += searchCondition;
       if (maxLexicalWords > 0)
-        sql += " AND term_lexical_words <= :max_lexical_words";
-      sql += " GROUP BY " + SELECT_TERM_ONLY;
+        sql += " AND stats_lexical_words <= :max_lexical_words";
       if (frequencyThreshold > 0)
-        sql += " HAVING count(context_id) >= :term_frequency";
+        sql += " AND stats_frequency >= :term_frequency";
+      if (after != null)
+        sql += keyset;
     }
 
-    sql += " ORDER BY term_frequency DESC, term_text";
-    MapSqlParameterSource paramSource = new MapSqlParameterSource();
+    sql += " ORDER BY stats_frequency DESC, stats_term_text";
+
     if (frequencyThreshold > 0)
       paramSource.addValue("term_frequency", frequencyThreshold);
-    if (searchText != null && searchText.length() > 0)
-      paramSource.addValue("term_text", searchText + "%");
     if (marked != null && marked)
       paramSource.addValue("term_marked", true);
     if (maxLexicalWords > 0)
       paramSource.addValue("max_lexical_words", maxLexicalWords);
+    if (after != null) {
+      paramSource.addValue("after_frequency", after.getFrequency());
+      paramSource.addValue("after_text", after.getText());
+    }
 
     paramSource.addValue("term_project_id", this.getCurrentProjectId());
+    return sql;
+  }
 
-    LOG.trace(sql);
-    LogParameters(paramSource);
-    TermMapper termMapper = new TermMapper();
-    SqlRowSet rs = jt.queryForRowSet(sql, paramSource);
-    List<Term> terms = new ArrayList<>();
-    while (rs.next()) {
-      PostGresTerm term = termMapper.mapRow(rs);
-      terms.add(term);
-    }
-
-    if (marked != null && marked) {
-      this.addParents(terms);
-      List<Term> termsWithFrequency = new ArrayList<>();
-      for (Term term : terms) {
-        int maxAncestorFrequency = this.getMaxAncestorFrequency(term);
-        if (maxAncestorFrequency >= frequencyThreshold)
-          termsWithFrequency.add(term);
+  @Override
+  public Term findTerm(final String text) {
+    try (TerminologyMetrics.Timer timer = metrics.time("findTerm")) {
+      if (text == null || text.trim().length() == 0)
+        throw new TalismaneException("Cannot get an empty term");
+
+      Term term = this.loadTerm(text);
+      if (term == null) {
+        PostGresTerm postGresTerm = this.newTerm();
+        postGresTerm.setText(text);
+        postGresTerm.getHeads();
+        postGresTerm.getExpansions();
+        term = postGresTerm;
       }
-      terms = termsWithFrequency;
+      return term;
     }
-
-    this.addHeadAndExpansionCounts(terms);
-    return terms;
   }
 
-  void addHeadAndExpansionCounts(List<Term> terms) {
-    if (terms.size() > 0) {
-      List<List<Term>> subLists = ListUtils.partition(terms, 32000);
-      for (List<Term> subList : subLists) {
-        Map<Integer, PostGresTerm> termMap = new HashMap<>();
-
-        for (Term term : subList) {
-          PostGresTerm postGresTerm = (PostGresTerm) term;
-          termMap.put(postGresTerm.getId(), postGresTerm);
-        }
-
-        NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
-        String sql = "SELECT termexp_term_id, count(termexp_expansion_id) AS term_expansion_count FROM term_expansions"
-            + " WHERE EXISTS (SELECT context_id FROM context WHERE context_term_id = termexp_term_id AND context_project_id = :term_project_id)"
-            + " AND EXISTS (SELECT context_id FROM context WHERE context_term_id = termexp_expansion_id AND context_project_id = :term_project_id)"
-            + " AND termexp_term_id IN (:term_ids)"
-            + " GROUP BY termexp_term_id";
-
-        MapSqlParameterSource paramSource = new MapSqlParameterSource();
-        paramSource.addValue("term_project_id", this.getCurrentProjectId());
-        paramSource.addValue("term_ids", termMap.keySet());
-
-        SqlRowSet rs = jt.queryForRowSet(sql, paramSource);
-        while (rs.next()) {
-          int termId = rs.getInt("termexp_term_id");
-          PostGresTerm postGresTerm = termMap.get(termId);
-          int termExpansionCount = rs.getInt("term_expansion_count");
-          postGresTerm.setExpansionCount(termExpansionCount);
-          postGresTerm.setDirty(false);
+  /**
+   * If the term cache is enabled, it is checked before querying the
+   * database.
+   */
+  @Override
+  public Term resolveTerm(final String text) {
+    try (TerminologyMetrics.Timer timer = metrics.time("resolveTerm")) {
+      if (text == null || text.trim().length() == 0)
+        throw new TalismaneException("Cannot get an empty term");
+
+      PostGresTerm term = null;
+      if (termCache != null) {
+        TermCache.CachedTerm cachedTerm = termCache.get(text);
+        if (cachedTerm != null) {
+          term = this.newTerm();
+          term.setId(cachedTerm.getTermId());
+          term.setText(text);
+          term.setLexicalWordCount(cachedTerm.getLexicalWordCount());
+          term.setDirty(false);
+          return term;
         }
+      }
 
-        jt = new NamedParameterJdbcTemplate(this.getDataSource());
-        sql = "SELECT termhead_term_id, count(termhead_head_id) AS term_head_count FROM term_heads"
-            + " WHERE EXISTS (SELECT context_id FROM context WHERE context_term_id = termhead_term_id AND context_project_id = :term_project_id)"
-            + " AND EXISTS (SELECT context_id FROM context WHERE context_term_id = termhead_head_id AND context_project_id = :term_project_id)"
-            + " AND termhead_term_id IN (:term_ids)"
-            + " GROUP BY termhead_term_id";
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+      String sql = "SELECT " + SELECT_TERM_WITHOUT_STATS
+          + " FROM term"
+          + " WHERE term_text=:term_text";
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("term_text", text);
 
-        paramSource = new MapSqlParameterSource();
-        paramSource.addValue("term_project_id", this.getCurrentProjectId());
-        paramSource.addValue("term_ids", termMap.keySet());
-
-        rs = jt.queryForRowSet(sql, paramSource);
-        while (rs.next()) {
-          int termId = rs.getInt("termhead_term_id");
-          PostGresTerm postGresTerm = termMap.get(termId);
-          int termHeadCount = rs.getInt("term_head_count");
-          postGresTerm.setHeadCount(termHeadCount);
-          postGresTerm.setDirty(false);
-        }
+      LOG.trace(sql);
+      LogParameters(paramSource);
+      try {
+        term = (PostGresTerm) jt.queryForObject(sql, paramSource, new TermMapper());
+        this.cacheTerm(term);
+      } catch (EmptyResultDataAccessException ex) {
+        term = this.newTerm();
+        term.setText(text);
       }
+      return term;
     }
   }
 
-  int getMaxAncestorFrequency(Term term) {
-    int maxFrequency = term.getFrequency();
-    for (Term parent : term.getParents()) {
-      int parentFrequency = this.getMaxAncestorFrequency(parent);
-      if (parentFrequency > maxFrequency)
-        maxFrequency = parentFrequency;
-    }
-    return maxFrequency;
+  private void cacheTerm(PostGresTerm term) {
+    if (termCache != null)
+      termCache.put(term.getText(), term.getId(), term.getLexicalWordCount());
   }
 
-  void addParents(List<Term> childTerms) {
-    if (childTerms.size() > 0) {
-      List<List<Term>> subLists = ListUtils.partition(childTerms, 32000);
-      for (List<Term> subList : subLists) {
-        NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
-        String sql = "SELECT " + SELECT_TERM + ", termexp_expansion_id FROM term_expansions"
-            + " INNER JOIN term ON termexp_expansion_id = term_id"
-            + " INNER JOIN context ON context_term_id = term_id"
-            + " WHERE context_project_id = :term_project_id"
-            + " AND termexp_expansion_id IN (:child_terms)"
-            + " GROUP BY " + SELECT_TERM_ONLY
-            + ", termexp_expansion_id";
+  /**
+   * Timings for each operation, along with connection pool and term cache
+   * statistics.
+   */
+  public TerminologyMetrics getMetrics() {
+    return metrics;
+  }
 
-        MapSqlParameterSource paramSource = new MapSqlParameterSource();
-        paramSource.addValue("term_project_id", this.getCurrentProjectId());
-        List<Integer> termIds = new ArrayList<>();
-        Map<Integer, PostGresTerm> childTermMap = new HashMap<>();
-        for (Term childTerm : subList) {
-          PostGresTerm termInternal = (PostGresTerm) childTerm;
-          if (termInternal.getParentsInternal() == null) {
-            termIds.add(termInternal.getId());
-            termInternal.setParentsInternal(new TreeSet<Term>());
-            childTermMap.put(termInternal.getId(), termInternal);
-          }
-        }
-        paramSource.addValue("child_terms", termIds);
+  /**
+   * The cache used by {@link #resolveTerm(String)}, or null if it is
+   * disabled.
+   */
+  public TermCache getTermCache() {
+    return termCache;
+  }
 
-        LOG.trace(sql);
-        LogParameters(paramSource);
+  @Override
+  public void storeTerm(Term term) {
+    try (TerminologyMetrics.Timer timer = metrics.time("storeTerm")) {
+      this.beginTransaction();
+      PostGresTerm termInternal = (PostGresTerm) term;
+      this.saveTerm(termInternal);
+      Map<Integer, PostGresTerm> linkedTerms = this.getTermsWithNewLinks(Collections.singletonList(termInternal));
+      this.saveExpansions(Collections.singletonList(termInternal));
+      this.saveHeads(Collections.singletonList(termInternal));
+      this.updateTermStatsCounts(linkedTerms.keySet(), false, linkedTerms);
+    }
+  }
 
-        SqlRowSet rs = jt.queryForRowSet(sql, paramSource);
-        TermMapper termMapper = new TermMapper();
-        List<Term> parentTerms = new ArrayList<>();
-        while (rs.next()) {
-          Term term = termMapper.mapRow(rs);
-          parentTerms.add(term);
-          int childId = rs.getInt("termexp_expansion_id");
-          PostGresTerm childTerm = childTermMap.get(childId);
-          childTerm.getParentsInternal().add(term);
-        }
-        if (parentTerms.size() > 0) {
-          this.addParents(parentTerms);
-        }
+  @Override
+  public void storeTerms(Collection<Term> terms) {
+    try (TerminologyMetrics.Timer timer = metrics.time("storeTerms")) {
+      timer.setRows(terms.size());
+      this.beginTransaction();
+      List<PostGresTerm> sortedTerms = new ArrayList<>(terms.size());
+      for (Term term : terms)
+        sortedTerms.add((PostGresTerm) term);
+      sortedTerms.sort(TERM_KEY_ORDER);
+
+      List<PostGresTerm> newTerms = new ArrayList<>();
+      for (PostGresTerm termInternal : sortedTerms) {
+        if (termInternal.isNew())
+          newTerms.add(termInternal);
+        else
+          this.saveTerm(termInternal);
       }
+      if (bulkIngest)
+        this.copyTerms(newTerms);
+      else
+        this.insertTerms(newTerms);
+
+      Map<Integer, PostGresTerm> linkedTerms = this.getTermsWithNewLinks(sortedTerms);
+      if (bulkIngest) {
+        this.copyRelations(sortedTerms);
+      } else {
+        this.saveExpansions(sortedTerms);
+        this.saveHeads(sortedTerms);
+      }
+      this.updateTermStatsCounts(linkedTerms.keySet(), false, linkedTerms);
     }
   }
 
   @Override
-  public Term findTerm(final String text) {
-    if (text == null || text.trim().length() == 0)
-      throw new TalismaneException("Cannot get an empty term");
-
-    Term term = this.loadTerm(text);
-    if (term == null) {
-      PostGresTerm postGresTerm = this.newTerm();
-      postGresTerm.setText(text);
-      postGresTerm.getHeads();
-      postGresTerm.getExpansions();
-      term = postGresTerm;
+  public void storeContext(Context context) {
+    try (TerminologyMetrics.Timer timer = metrics.time("storeContext")) {
+      this.beginTransaction();
+      PostGresContext contextInternal = (PostGresContext) context;
+      if (this.saveContext(contextInternal))
+        this.addToTermStats(Collections.singletonList(contextInternal));
     }
-    return term;
   }
 
   @Override
-  public void storeTerm(Term term) {
-    PostGresTerm termInternal = (PostGresTerm) term;
-    this.saveTerm(termInternal);
-    this.saveExpansions(termInternal);
-    this.saveHeads(termInternal);
+  public void storeContexts(Collection<Context> contexts) {
+    try (TerminologyMetrics.Timer timer = metrics.time("storeContexts")) {
+      this.beginTransaction();
+      List<PostGresContext> sortedContexts = new ArrayList<>(contexts.size());
+      for (Context context : contexts)
+        sortedContexts.add((PostGresContext) context);
+      sortedContexts.sort(CONTEXT_KEY_ORDER);
+
+      List<PostGresContext> newContexts = new ArrayList<>();
+      for (PostGresContext contextInternal : sortedContexts) {
+        if (contextInternal.isNew())
+          newContexts.add(contextInternal);
+        else
+          this.saveContext(contextInternal);
+      }
+      List<PostGresContext> insertedContexts;
+      if (bulkIngest)
+        insertedContexts = this.copyContexts(newContexts);
+      else
+        insertedContexts = this.insertContexts(newContexts);
+      this.addToTermStats(insertedContexts);
+      timer.setRows(insertedContexts.size());
+    }
   }
 
-  @Override
-  public void storeContext(Context context) {
-    this.saveContext((PostGresContext) context);
+  /**
+   * In transactional mode, a transaction is started by the first write, and
+   * lasts until {@link #commit()} or {@link #rollback()}. Otherwise, each
+   * statement is committed immediately.
+   */
+  private void beginTransaction() {
+    lastWriteTime = System.currentTimeMillis();
+    if (transactionManager != null && transaction == null) {
+      // make sure the project exists before any write is buffered
+      this.getCurrentProjectId();
+      transaction = transactionManager.getTransaction(new DefaultTransactionDefinition());
+    }
   }
 
   @Override
   public void commit() {
-    // nothing to do here, not being transactional about it
+    try (TerminologyMetrics.Timer timer = metrics.time("commit")) {
+      if (transaction != null) {
+        TransactionStatus status = transaction;
+        transaction = null;
+        try {
+          transactionManager.commit(status);
+        } catch (RuntimeException e) {
+          // the transaction has been rolled back by the database
+          this.clearCachedIds();
+          throw e;
+        }
+        lastWriteTime = System.currentTimeMillis();
+      }
+    }
   }
 
   @Override
-  public Set<Term> getParents(final Term term) {
-    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
-    String sql = "SELECT " + SELECT_TERM
-        + " FROM term"
-        + " INNER JOIN context ON context_term_id = term_id"
-        + " INNER JOIN term_expansions ON term_id = termexp_term_id"
-        + " WHERE context_project_id = :term_project_id"
-        + " AND termexp_expansion_id = :term_id"
-        + " GROUP BY " + SELECT_TERM_ONLY
-        + " ORDER BY term_text";
-    MapSqlParameterSource paramSource = new MapSqlParameterSource();
-    paramSource.addValue("term_id", ((PostGresTerm) term).getId());
-    paramSource.addValue("term_project_id", this.getCurrentProjectId());
+  public void rollback() {
+    try (TerminologyMetrics.Timer timer = metrics.time("rollback")) {
+      if (transaction != null) {
+        TransactionStatus status = transaction;
+        transaction = null;
+        transactionManager.rollback(status);
+      }
+      // even if there's nothing left to roll back (e.g. the commit failed),
+      // the cached ids may no longer exist
+      this.clearCachedIds();
+    }
+  }
 
-    LOG.trace(sql);
-    LogParameters(paramSource);
-    List<Term> terms = jt.query(sql, paramSource, new TermMapper());
+  /**
+   * Forget all ids which may have been allocated by a transaction which has
+   * been rolled back.
+   */
+  private void clearCachedIds() {
+    if (termCache != null)
+      termCache.clear();
+    filenameMap.clear();
+    fileIdMap.clear();
+  }
 
-    this.addHeadAndExpansionCounts(terms);
+  @Override
+  public Set<Term> getParents(final Term term) {
+    try (TerminologyMetrics.Timer timer = metrics.time("getParents")) {
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getReadDataSource());
+      String sql = "SELECT " + SELECT_TERM
+          + " FROM term"
+          + " INNER JOIN term_stats ON stats_term_id = term_id"
+          + " INNER JOIN term_expansions ON term_id = termexp_term_id"
+          + " WHERE stats_project_id = :term_project_id"
+          + " AND termexp_expansion_id = :term_id"
+          + " ORDER BY term_text";
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("term_id", ((PostGresTerm) term).getId());
+      paramSource.addValue("term_project_id", this.getCurrentProjectId());
 
-    Set<Term> termSet = new TreeSet<>(new TermFrequencyComparator());
-    termSet.addAll(terms);
+      LOG.trace(sql);
+      LogParameters(paramSource);
+      List<Term> terms = jt.query(sql, paramSource, new TermMapper());
+      timer.setRows(terms.size());
+
+      Set<Term> termSet = new TreeSet<>(new TermFrequencyComparator());
+      termSet.addAll(terms);
 
-    return termSet;
+      return termSet;
+    }
   }
 
   @Override
   public Set<Term> getExpansions(Term term) {
-    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
-    String sql = "SELECT " + SELECT_TERM
-        + " FROM term"
-        + " INNER JOIN context ON context_term_id = term_id"
-        + " INNER JOIN term_expansions ON term_id = termexp_expansion_id"
-        + " WHERE context_project_id = :term_project_id"
-        + " AND termexp_term_id = :term_id"
-        + " GROUP BY " + SELECT_TERM_ONLY
-        + " ORDER BY term_text";
-    MapSqlParameterSource paramSource = new MapSqlParameterSource();
-    paramSource.addValue("term_id", ((PostGresTerm) term).getId());
-    paramSource.addValue("term_project_id", this.getCurrentProjectId());
+    try (TerminologyMetrics.Timer timer = metrics.time("getExpansions")) {
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getReadDataSource());
+      String sql = "SELECT " + SELECT_TERM
+          + " FROM term"
+          + " INNER JOIN term_stats ON stats_term_id = term_id"
+          + " INNER JOIN term_expansions ON term_id = termexp_expansion_id"
+          + " WHERE stats_project_id = :term_project_id"
+          + " AND termexp_term_id = :term_id"
+          + " ORDER BY term_text";
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("term_id", ((PostGresTerm) term).getId());
+      paramSource.addValue("term_project_id", this.getCurrentProjectId());
 
-    LOG.trace(sql);
-    LogParameters(paramSource);
-    List<Term> terms = jt.query(sql, paramSource, new TermMapper());
-    this.addHeadAndExpansionCounts(terms);
+      LOG.trace(sql);
+      LogParameters(paramSource);
+      List<Term> terms = jt.query(sql, paramSource, new TermMapper());
+      timer.setRows(terms.size());
 
-    Set<Term> termSet = new TreeSet<>(new TermFrequencyComparator());
-    termSet.addAll(terms);
-    return termSet;
+      Set<Term> termSet = new TreeSet<>(new TermFrequencyComparator());
+      termSet.addAll(terms);
+      return termSet;
+    }
   }
 
   @Override
   public Set<Term> getHeads(Term term) {
-    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
-    String sql = "SELECT " + SELECT_TERM
-        + " FROM term"
-        + " INNER JOIN context ON context_term_id = term_id"
-        + " INNER JOIN term_heads ON term_id = termhead_head_id"
-        + " WHERE context_project_id = :term_project_id"
-        + " AND termhead_term_id = :term_id"
-        + " GROUP BY " + SELECT_TERM_ONLY
-        + " ORDER BY term_text";
-    MapSqlParameterSource paramSource = new MapSqlParameterSource();
-    paramSource.addValue("term_id", ((PostGresTerm) term).getId());
-    paramSource.addValue("term_project_id", this.getCurrentProjectId());
+    try (TerminologyMetrics.Timer timer = metrics.time("getHeads")) {
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getReadDataSource());
+      String sql = "SELECT " + SELECT_TERM
+          + " FROM term"
+          + " INNER JOIN term_stats ON stats_term_id = term_id"
+          + " INNER JOIN term_heads ON term_id = termhead_head_id"
+          + " WHERE stats_project_id = :term_project_id"
+          + " AND termhead_term_id = :term_id"
+          + " ORDER BY term_text";
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("term_id", ((PostGresTerm) term).getId());
+      paramSource.addValue("term_project_id", this.getCurrentProjectId());
 
-    LOG.trace(sql);
-    LogParameters(paramSource);
+      LOG.trace(sql);
+      LogParameters(paramSource);
 
-    List<Term> terms = jt.query(sql, paramSource, new TermMapper());
-    this.addHeadAndExpansionCounts(terms);
+      List<Term> terms = jt.query(sql, paramSource, new TermMapper());
+      timer.setRows(terms.size());
 
-    Set<Term> termSet = new TreeSet<>(new TermFrequencyComparator());
-    termSet.addAll(terms);
-    return termSet;
+      Set<Term> termSet = new TreeSet<>(new TermFrequencyComparator());
+      termSet.addAll(terms);
+      return termSet;
+    }
   }
 
   @Override
   public List<Context> getContexts(Term term) {
-    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
-    String sql = "SELECT " + SELECT_CONTEXT
-        + " FROM context"
-        + " INNER JOIN term ON context_term_id = term_id"
-        + " WHERE context_project_id = :term_project_id"
-        + " AND term_id = :context_term_id"
-        + " ORDER BY context_id";
-    MapSqlParameterSource paramSource = new MapSqlParameterSource();
-    paramSource.addValue("context_term_id", ((PostGresTerm) term).getId());
-    paramSource.addValue("term_project_id", this.getCurrentProjectId());
+    try (TerminologyMetrics.Timer timer = metrics.time("getContexts")) {
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getReadDataSource());
+      String sql = "SELECT " + SELECT_CONTEXT
+          + " FROM context"
+          + " INNER JOIN term ON context_term_id = term_id"
+          + " WHERE context_project_id = :term_project_id"
+          + " AND term_id = :context_term_id"
+          + " ORDER BY context_id";
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("context_term_id", ((PostGresTerm) term).getId());
+      paramSource.addValue("term_project_id", this.getCurrentProjectId());
 
-    LOG.trace(sql);
-    LogParameters(paramSource);
-    List<Context> contexts = jt.query(sql, paramSource, new ContextMapper());
+      LOG.trace(sql);
+      LogParameters(paramSource);
+      List<Context> contexts = jt.query(sql, paramSource, new ContextMapper());
+      timer.setRows(contexts.size());
+
+      return contexts;
+    }
+  }
+
+  @Override
+  public Map<Term, List<Context>> getContexts(Collection<Term> terms, int maxContextsPerTerm) {
+    try (TerminologyMetrics.Timer timer = metrics.time("getContextsForTerms")) {
+      Map<Term, List<Context>> contextMap = new HashMap<>();
+      Map<Integer, Term> termMap = new HashMap<>();
+      for (Term term : terms)
+        termMap.put(((PostGresTerm) term).getId(), term);
+
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getReadDataSource());
+      List<List<Integer>> subLists = ListUtils.partition(new ArrayList<>(termMap.keySet()), 32000);
+      for (List<Integer> termIds : subLists) {
+        String sql = "SELECT " + SELECT_CONTEXT
+            + " FROM context"
+            + " WHERE context_project_id = :term_project_id"
+            + " AND context_term_id IN (:term_ids)";
+        if (maxContextsPerTerm > 0) {
+          sql = "SELECT " + SELECT_CONTEXT + " FROM ("
+              + "SELECT " + SELECT_CONTEXT + ", row_number() OVER (PARTITION BY context_term_id ORDER BY context_id) AS context_rank"
+              + " FROM context"
+              + " WHERE context_project_id = :term_project_id"
+              + " AND context_term_id IN (:term_ids)"
+              + ") AS ranked_context"
+              + " WHERE context_rank <= :max_contexts";
+        }
+        sql += " ORDER BY context_term_id, context_id";
+
+        MapSqlParameterSource paramSource = new MapSqlParameterSource();
+        paramSource.addValue("term_project_id", this.getCurrentProjectId());
+        paramSource.addValue("term_ids", termIds);
+        if (maxContextsPerTerm > 0)
+          paramSource.addValue("max_contexts", maxContextsPerTerm);
+
+        LOG.trace(sql);
+        LogParameters(paramSource);
+        List<Context> contexts = jt.query(sql, paramSource, new ContextMapper());
+        timer.setRows(timer.getRows() + contexts.size());
+        for (Context context : contexts) {
+          Term term = termMap.get(((PostGresContext) context).getTermId());
+          contextMap.computeIfAbsent(term, k -> new ArrayList<>()).add(context);
+        }
+      }
+      return contextMap;
+    }
+  }
+
+  @Override
+  public CompletableFuture<List<Term>> findTermsAsync(int frequencyThreshold, String searchText, TermSearchMode searchMode, int maxLexicalWords,
+      Boolean marked) {
+    return CompletableFuture.supplyAsync(() -> this.findTerms(frequencyThreshold, searchText, searchMode, maxLexicalWords, marked), asyncExecutor);
+  }
+
+  @Override
+  public CompletableFuture<List<Term>> findTermsAsync(int frequencyThreshold, String searchText, TermSearchMode searchMode, int maxLexicalWords,
+      Boolean marked, Term after, int pageSize) {
+    return CompletableFuture.supplyAsync(
+        () -> this.findTerms(frequencyThreshold, searchText, searchMode, maxLexicalWords, marked, after, pageSize), asyncExecutor);
+  }
+
+  @Override
+  public CompletableFuture<Term> findTermAsync(String text) {
+    return CompletableFuture.supplyAsync(() -> this.findTerm(text), asyncExecutor);
+  }
+
+  @Override
+  public CompletableFuture<Set<Term>> getParentsAsync(Term term) {
+    return CompletableFuture.supplyAsync(() -> this.getParents(term), asyncExecutor);
+  }
+
+  @Override
+  public CompletableFuture<Set<Term>> getHeadsAsync(Term term) {
+    return CompletableFuture.supplyAsync(() -> this.getHeads(term), asyncExecutor);
+  }
+
+  @Override
+  public CompletableFuture<Set<Term>> getExpansionsAsync(Term term) {
+    return CompletableFuture.supplyAsync(() -> this.getExpansions(term), asyncExecutor);
+  }
 
-    return contexts;
+  @Override
+  public CompletableFuture<List<Context>> getContextsAsync(Term term) {
+    return CompletableFuture.supplyAsync(() -> this.getContexts(term), asyncExecutor);
+  }
+
+  @Override
+  public CompletableFuture<Map<Term, List<Context>>> getContextsAsync(Collection<Term> terms, int maxContextsPerTerm) {
+    return CompletableFuture.supplyAsync(() -> this.getContexts(terms, maxContextsPerTerm), asyncExecutor);
   }
 
   Term loadTerm(int termId) {
     NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
     String sql = "SELECT " + SELECT_TERM
         + " FROM term"
-        + " LEFT JOIN context ON context_term_id = term_id"
-        + " AND context_project_id = :term_project_id"
-        + " WHERE term_id=:term_id"
-        + " GROUP BY " + SELECT_TERM_ONLY;
+        + " LEFT JOIN term_stats ON stats_term_id = term_id"
+        + " AND stats_project_id = :term_project_id"
+        + " WHERE term_id=:term_id";
     MapSqlParameterSource paramSource = new MapSqlParameterSource();
     paramSource.addValue("term_id", termId);
     paramSource.addValue("term_project_id", this.getCurrentProjectId());
@@ -405,9 +810,6 @@ public class PostGresTerminologyBase implements TerminologyBase {
       ex.hashCode();
     }
 
-    if (term != null)
-      this.addHeadAndExpansionCounts(new ArrayList<>(Arrays.asList(term)));
-
     return term;
   }
 
@@ -416,10 +818,9 @@ public class PostGresTerminologyBase implements TerminologyBase {
 
     String sql = "SELECT " + SELECT_TERM
         + " FROM term"
-        + " LEFT JOIN context ON context_term_id = term_id"
-        + " AND context_project_id = :term_project_id"
-        + " WHERE term_text=:term_text"
-        + " GROUP BY " + SELECT_TERM_ONLY;
+        + " LEFT JOIN term_stats ON stats_term_id = term_id"
+        + " AND stats_project_id = :term_project_id"
+        + " WHERE term_text=:term_text";
     MapSqlParameterSource paramSource = new MapSqlParameterSource();
     paramSource.addValue("term_text", termText);
     paramSource.addValue("term_project_id", this.getCurrentProjectId());
@@ -433,9 +834,6 @@ public class PostGresTerminologyBase implements TerminologyBase {
       ex.hashCode();
     }
 
-    if (term != null)
-      this.addHeadAndExpansionCounts(new ArrayList<>(Arrays.asList(term)));
-
     return term;
   }
 
@@ -448,18 +846,21 @@ public class PostGresTerminologyBase implements TerminologyBase {
       paramSource.addValue("term_lexical_words", term.getLexicalWordCount());
 
       if (term.isNew()) {
-        String sql = "SELECT nextval('seq_term_id')";
-        LOG.trace(sql);
-        int termId = jt.queryForObject(sql, paramSource, Integer.class);
+        int termId = termIdAllocator.nextId();
         paramSource.addValue("term_id", termId);
 
-        sql = "INSERT INTO term (term_id, term_marked, term_text, term_lexical_words)"
-            + " VALUES (:term_id, :term_marked, :term_text, :term_lexical_words)";
+        // if another process has inserted the same term in the meantime, we
+        // get its id back instead
+        String sql = "INSERT INTO term (term_id, term_marked, term_text, term_lexical_words)"
+            + " VALUES (:term_id, :term_marked, :term_text, :term_lexical_words)"
+            + " ON CONFLICT (term_text) DO UPDATE SET term_text = EXCLUDED.term_text"
+            + " RETURNING term_id";
 
         LOG.trace(sql);
         LogParameters(paramSource);
-        jt.update(sql, paramSource);
+        termId = jt.queryForObject(sql, paramSource, Integer.class);
         term.setId(termId);
+        this.cacheTerm(term);
       } else {
         String sql = "UPDATE term"
             + " SET term_marked = :term_marked"
@@ -471,11 +872,147 @@ public class PostGresTerminologyBase implements TerminologyBase {
         LOG.trace(sql);
         LogParameters(paramSource);
         jt.update(sql, paramSource);
+
+        sql = "UPDATE term_stats SET stats_lexical_words = :term_lexical_words, stats_term_text = :term_text"
+            + " WHERE stats_term_id = :term_id";
+        LOG.trace(sql);
+        LogParameters(paramSource);
+        jt.update(sql, paramSource);
       }
       term.setDirty(false);
     }
   }
 
+  /**
+   * Add newly inserted contexts to their terms' frequency in the current
+   * project. Terms which appear in the project for the first time also change
+   * the head and expansion counts of the terms linked to them, so these are
+   * recalculated.
+   */
+  void addToTermStats(List<PostGresContext> insertedContexts) {
+    if (insertedContexts.size() == 0)
+      return;
+
+    Map<Integer, Integer> frequencies = new TreeMap<>();
+    for (PostGresContext context : insertedContexts)
+      frequencies.merge(context.getTermId(), 1, Integer::sum);
+
+    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+    List<List<Integer>> subLists = ListUtils.partition(new ArrayList<>(frequencies.keySet()), 32000);
+    for (List<Integer> termIds : subLists) {
+      String sql = "SELECT stats_term_id FROM term_stats"
+          + " WHERE stats_project_id = :project_id"
+          + " AND stats_term_id IN (:term_ids)";
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("project_id", this.getCurrentProjectId());
+      paramSource.addValue("term_ids", termIds);
+
+      LOG.trace(sql);
+      LogParameters(paramSource);
+      Set<Integer> existingTermIds = new HashSet<>(jt.queryForList(sql, paramSource, Integer.class));
+
+      List<SqlParameterSource> batch = new ArrayList<>();
+      List<Integer> newTermIds = new ArrayList<>();
+      for (int termId : termIds) {
+        MapSqlParameterSource termParams = new MapSqlParameterSource();
+        termParams.addValue("project_id", this.getCurrentProjectId());
+        termParams.addValue("term_id", termId);
+        termParams.addValue("frequency", frequencies.get(termId));
+        batch.add(termParams);
+        if (!existingTermIds.contains(termId))
+          newTermIds.add(termId);
+      }
+
+      sql = "INSERT INTO term_stats (stats_project_id, stats_term_id, stats_frequency, stats_lexical_words, stats_term_text)"
+          + " SELECT :project_id, term_id, :frequency, term_lexical_words, term_text FROM term WHERE term_id = :term_id"
+          + " ON CONFLICT ON CONSTRAINT pk_term_stats"
+          + " DO UPDATE SET stats_frequency = term_stats.stats_frequency + EXCLUDED.stats_frequency";
+      LOG.trace(sql);
+      LOG.trace("Batch size: " + batch.size());
+      jt.batchUpdate(sql, batch.toArray(new SqlParameterSource[batch.size()]));
+
+      if (newTermIds.size() > 0)
+        this.updateTermStatsCounts(newTermIds, true);
+    }
+  }
+
+  /**
+   * Recalculate the head and expansion counts of the given terms in the
+   * current project.
+   *
+   * @param includeLinkedTerms
+   *          if true, also recalculate the counts of any term which has one of
+   *          the given terms as a head or expansion
+   */
+  void updateTermStatsCounts(Collection<Integer> termIds, boolean includeLinkedTerms) {
+    this.updateTermStatsCounts(termIds, includeLinkedTerms, Collections.emptyMap());
+  }
+
+  /**
+   * As {@link #updateTermStatsCounts(Collection, boolean)}, and copy the
+   * recounted head and expansion counts back to the terms given, since only
+   * the database knows which of their new links were actually inserted.
+   */
+  private void updateTermStatsCounts(Collection<Integer> termIds, boolean includeLinkedTerms, Map<Integer, PostGresTerm> termsToRefresh) {
+    if (termIds.size() == 0)
+      return;
+
+    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+    List<Integer> sortedTermIds = new ArrayList<>(termIds);
+    Collections.sort(sortedTermIds);
+    List<List<Integer>> subLists = ListUtils.partition(sortedTermIds, 32000);
+    for (List<Integer> subList : subLists) {
+      String sql = "UPDATE term_stats s"
+          + " SET stats_expansion_count = (SELECT count(*) FROM term_expansions"
+          + "   INNER JOIN term_stats e ON e.stats_term_id = termexp_expansion_id AND e.stats_project_id = s.stats_project_id"
+          + "   WHERE termexp_term_id = s.stats_term_id)"
+          + ", stats_head_count = (SELECT count(*) FROM term_heads"
+          + "   INNER JOIN term_stats h ON h.stats_term_id = termhead_head_id AND h.stats_project_id = s.stats_project_id"
+          + "   WHERE termhead_term_id = s.stats_term_id)"
+          + " WHERE s.stats_project_id = :project_id"
+          + " AND (s.stats_term_id IN (:term_ids)";
+      if (includeLinkedTerms) {
+        sql += " OR s.stats_term_id IN (SELECT termexp_term_id FROM term_expansions WHERE termexp_expansion_id IN (:term_ids))"
+            + " OR s.stats_term_id IN (SELECT termhead_term_id FROM term_heads WHERE termhead_head_id IN (:term_ids))";
+      }
+      sql += ")";
+      if (termsToRefresh.size() > 0)
+        sql += " RETURNING stats_term_id, stats_head_count, stats_expansion_count";
+
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("project_id", this.getCurrentProjectId());
+      paramSource.addValue("term_ids", subList);
+
+      LOG.trace(sql);
+      LogParameters(paramSource);
+      if (termsToRefresh.size() > 0) {
+        jt.query(sql, paramSource, (RowCallbackHandler) rs -> {
+          PostGresTerm term = termsToRefresh.get(rs.getInt("stats_term_id"));
+          if (term != null) {
+            term.setHeadCount(rs.getInt("stats_head_count"));
+            term.setExpansionCount(rs.getInt("stats_expansion_count"));
+          }
+        });
+      } else {
+        jt.update(sql, paramSource);
+      }
+    }
+  }
+
+  /**
+   * Any of these terms which have heads or expansions waiting to be saved,
+   * mapped by id.
+   */
+  private Map<Integer, PostGresTerm> getTermsWithNewLinks(Collection<? extends Term> terms) {
+    Map<Integer, PostGresTerm> linkedTerms = new LinkedHashMap<>();
+    for (Term term : terms) {
+      PostGresTerm termInternal = (PostGresTerm) term;
+      if (termInternal.getExpansionsAdded().size() > 0 || termInternal.getHeadsAdded().size() > 0)
+        linkedTerms.put(termInternal.getId(), termInternal);
+    }
+    return linkedTerms;
+  }
+
   protected final class TermMapper implements RowMapper<Term> {
     public TermMapper() {
     };
@@ -490,6 +1027,8 @@ public class PostGresTerminologyBase implements TerminologyBase {
       term.setId(rs.getInt("term_id"));
       term.setText(rs.getString("term_text"));
       term.setFrequency(rs.getInt("term_frequency"));
+      term.setHeadCount(rs.getInt("term_head_count"));
+      term.setExpansionCount(rs.getInt("term_expansion_count"));
       term.setMarked(rs.getBoolean("term_marked"));
       term.setLexicalWordCount(rs.getInt("term_lexical_words"));
       term.setDirty(false);
@@ -516,42 +1055,54 @@ public class PostGresTerminologyBase implements TerminologyBase {
 
   @Override
   public Context findContext(Term term, String fileName, int lineNumber, int columnNumber) {
-    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
-    String sql = "SELECT " + SELECT_CONTEXT + " FROM context"
-        + " WHERE context_term_id=:context_term_id"
-        + " AND context_file_id=:context_file_id"
-        + " AND context_start_row=:context_start_row"
-        + " AND context_start_column=:context_start_column"
-        + " AND context_project_id=:project_id";
-
-    int fileId = this.getFileId(fileName);
-    MapSqlParameterSource paramSource = new MapSqlParameterSource();
-    paramSource.addValue("context_term_id", ((PostGresTerm) term).getId());
-    paramSource.addValue("context_file_id", fileId);
-    paramSource.addValue("context_start_row", lineNumber);
-    paramSource.addValue("context_start_column", columnNumber);
-    paramSource.addValue("project_id", this.getCurrentProjectId());
+    try (TerminologyMetrics.Timer timer = metrics.time("findContext")) {
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+      String sql = "SELECT " + SELECT_CONTEXT + " FROM context"
+          + " WHERE context_term_id=:context_term_id"
+          + " AND context_file_id=:context_file_id"
+          + " AND context_start_row=:context_start_row"
+          + " AND context_start_column=:context_start_column"
+          + " AND context_project_id=:project_id";
+
+      int fileId = this.getFileId(fileName);
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("context_term_id", ((PostGresTerm) term).getId());
+      paramSource.addValue("context_file_id", fileId);
+      paramSource.addValue("context_start_row", lineNumber);
+      paramSource.addValue("context_start_column", columnNumber);
+      paramSource.addValue("project_id", this.getCurrentProjectId());
 
-    LOG.trace(sql);
-    LogParameters(paramSource);
-    PostGresContext context = null;
-    try {
-      context = (PostGresContext) jt.queryForObject(sql, paramSource, new ContextMapper());
-    } catch (EmptyResultDataAccessException ex) {
-      ex.hashCode();
-    }
-    if (context == null) {
-      context = this.newContext();
-      context.setFileName(fileName);
-      context.setFileId(fileId);
-      context.setLineNumber(lineNumber);
-      context.setColumnNumber(columnNumber);
-      context.setTerm(term);
+      LOG.trace(sql);
+      LogParameters(paramSource);
+      PostGresContext context = null;
+      try {
+        context = (PostGresContext) jt.queryForObject(sql, paramSource, new ContextMapper());
+      } catch (EmptyResultDataAccessException ex) {
+        ex.hashCode();
+      }
+      if (context == null) {
+        context = (PostGresContext) this.newContext(term, fileName, lineNumber, columnNumber);
+      }
+      return context;
     }
+  }
+
+  @Override
+  public Context newContext(Term term, String fileName, int lineNumber, int columnNumber) {
+    PostGresContext context = this.newContext();
+    context.setFileName(fileName);
+    context.setFileId(this.getFileId(fileName));
+    context.setLineNumber(lineNumber);
+    context.setColumnNumber(columnNumber);
+    context.setTerm(term);
     return context;
   }
 
-  void saveContext(PostGresContext context) {
+  /**
+   * @return true if a new context was inserted
+   */
+  boolean saveContext(PostGresContext context) {
+    boolean inserted = false;
     if (context.isDirty()) {
       NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
       MapSqlParameterSource paramSource = new MapSqlParameterSource();
@@ -565,18 +1116,22 @@ public class PostGresTerminologyBase implements TerminologyBase {
       paramSource.addValue("project_id", this.getCurrentProjectId());
 
       if (context.isNew()) {
-        String sql = "SELECT nextval('seq_context_id')";
-        LOG.trace(sql);
-        int contextId = jt.queryForObject(sql, paramSource, Integer.class);
+        int contextId = contextIdAllocator.nextId();
         paramSource.addValue("context_id", contextId);
 
-        sql = "INSERT INTO context (context_id, context_start_row, context_start_column, context_end_row, context_end_column, context_text, context_file_id, context_term_id, context_project_id)"
-            + " VALUES (:context_id, :context_start_row, :context_start_column, :context_end_row, :context_end_column, :context_text, :context_file_id, :context_term_id, :project_id)";
+        // if the same context has already been stored, it is left untouched
+        String sql = "INSERT INTO context (context_id, context_start_row, context_start_column, context_end_row, context_end_column, context_text, context_file_id, context_term_id, context_project_id)"
+            + " VALUES (:context_id, :context_start_row, :context_start_column, :context_end_row, :context_end_column, :context_text, :context_file_id, :context_term_id, :project_id)"
+            + " ON CONFLICT ON CONSTRAINT uk_context DO NOTHING"
+            + " RETURNING context_id";
 
         LOG.trace(sql);
         LogParameters(paramSource);
-        jt.update(sql, paramSource);
-        context.setId(contextId);
+        List<Integer> insertedIds = jt.queryForList(sql, paramSource, Integer.class);
+        if (insertedIds.size() > 0) {
+          context.setId(contextId);
+          inserted = true;
+        }
       } else {
         String sql = "UPDATE context"
             + " SET context_start_row = :context_start_row"
@@ -595,6 +1150,7 @@ public class PostGresTerminologyBase implements TerminologyBase {
       }
       context.setDirty(false);
     }
+    return inserted;
   }
 
   protected final class ContextMapper implements RowMapper<Context> {
@@ -624,42 +1180,127 @@ public class PostGresTerminologyBase implements TerminologyBase {
   }
 
   public void setDataSource(DataSource dataSource) {
+    if (this.readDataSource == this.dataSource)
+      this.readDataSource = dataSource;
     this.dataSource = dataSource;
+    if (transactionManager != null)
+      transactionManager.setDataSource(dataSource);
+  }
+
+  /**
+   * The data source used for listing terms and loading their relations and
+   * contexts. This is the read replica if talismane.terminology.jdbc.read is
+   * configured, except while a transaction is in progress, or within
+   * read.primary-after-write of the last write, when the primary is used so
+   * that our own writes are always visible.
+   */
+  public DataSource getReadDataSource() {
+    if (readDataSource == dataSource)
+      return dataSource;
+    if (transaction != null || System.currentTimeMillis() - lastWriteTime < primaryAfterWriteMillis)
+      return dataSource;
+    return readDataSource;
+  }
+
+  public void setReadDataSource(DataSource readDataSource) {
+    this.readDataSource = readDataSource;
   }
 
   public static void LogParameters(MapSqlParameterSource paramSource) {
     DaoUtils.LogParameters(paramSource.getValues(), LOG);
   }
 
-  int getCurrentProjectId() {
+  /**
+   * The current project's id. The project and its partitions are created if
+   * need be in a short transaction of their own, committed straight away:
+   * creating a partition locks the whole partitioned table, which would
+   * otherwise block all other projects until the current write transaction
+   * is committed.
+   */
+  synchronized int getCurrentProjectId() {
     if (projectId == 0) {
+      TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(this.getDataSource()));
+      transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+      projectId = transactionTemplate.execute(status -> this.findOrCreateProject());
+    }
+    return projectId;
+  }
+
+  private int findOrCreateProject() {
+    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+    String sql = "SELECT project_id FROM project WHERE project_code=:project_code";
+    MapSqlParameterSource paramSource = new MapSqlParameterSource();
+    paramSource.addValue("project_code", this.projectCode);
+
+    LOG.trace(sql);
+    LogParameters(paramSource);
+    try {
+      return jt.queryForObject(sql, paramSource, Integer.class);
+    } catch (EmptyResultDataAccessException ex) {
+      // do nothing
+    }
+
+    int newProjectId = projectIdAllocator.nextId();
+    paramSource.addValue("project_id", newProjectId);
+
+    sql = "INSERT INTO project (project_id, project_code)" + " VALUES (:project_id, :project_code)";
+
+    LOG.trace(sql);
+    LogParameters(paramSource);
+    jt.update(sql, paramSource);
+
+    // contexts and term statistics are partitioned by project
+    sql = "SELECT create_project_partitions(:project_id)";
+
+    LOG.trace(sql);
+    LogParameters(paramSource);
+    jt.queryForRowSet(sql, paramSource);
+    return newProjectId;
+  }
+
+  /**
+   * Remove all contexts and term statistics from the current project, by
+   * truncating its partitions. Terms and their heads and expansions are shared
+   * between projects, and are left untouched.
+   */
+  public void clearProject() {
+    try (TerminologyMetrics.Timer timer = metrics.time("clearProject")) {
+      this.beginTransaction();
       NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
-      String sql = "SELECT project_id FROM project WHERE project_code=:project_code";
+      String sql = "SELECT truncate_project_partitions(:project_id)";
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("project_id", this.getCurrentProjectId());
+
+      LOG.trace(sql);
+      LogParameters(paramSource);
+      jt.queryForRowSet(sql, paramSource);
+    }
+  }
+
+  /**
+   * Delete the current project, by dropping its partitions. Terms and their
+   * heads and expansions are shared between projects, and are left untouched.
+   */
+  public void deleteProject() {
+    try (TerminologyMetrics.Timer timer = metrics.time("deleteProject")) {
+      this.beginTransaction();
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+      String sql = "SELECT drop_project_partitions(project_id) FROM project WHERE project_code=:project_code";
       MapSqlParameterSource paramSource = new MapSqlParameterSource();
       paramSource.addValue("project_code", this.projectCode);
 
       LOG.trace(sql);
       LogParameters(paramSource);
-      try {
-        projectId = jt.queryForObject(sql, paramSource, Integer.class);
-      } catch (EmptyResultDataAccessException ex) {
-        // do nothing
-      }
+      jt.queryForRowSet(sql, paramSource);
 
-      if (projectId == 0) {
-        sql = "SELECT nextval('seq_project_id')";
-        LOG.trace(sql);
-        projectId = jt.queryForObject(sql, paramSource, Integer.class);
-        paramSource.addValue("project_id", projectId);
+      sql = "DELETE FROM project WHERE project_code=:project_code";
 
-        sql = "INSERT INTO project (project_id, project_code)" + " VALUES (:project_id, :project_code)";
+      LOG.trace(sql);
+      LogParameters(paramSource);
+      jt.update(sql, paramSource);
 
-        LOG.trace(sql);
-        LogParameters(paramSource);
-        jt.update(sql, paramSource);
-      }
+      projectId = 0;
     }
-    return projectId;
   }
 
   String getFileName(int fileId) {
@@ -698,9 +1339,7 @@ public class PostGresTerminologyBase implements TerminologyBase {
       }
 
       if (fileId == 0) {
-        sql = "SELECT nextval('seq_file_id')";
-        LOG.trace(sql);
-        fileId = jt.queryForObject(sql, paramSource, Integer.class);
+        fileId = fileIdAllocator.nextId();
         paramSource.addValue("file_id", fileId);
 
         sql = "INSERT INTO file (file_id, file_name)"
@@ -719,38 +1358,394 @@ public class PostGresTerminologyBase implements TerminologyBase {
     return fileId;
   }
 
-  void saveExpansions(Term term) {
-    PostGresTerm iTerm = (PostGresTerm) term;
-    for (Term expansion : iTerm.getExpansionSet().getItemsAdded()) {
+  /**
+   * Insert the expansions added to these terms in a single JDBC batch.
+   */
+  void saveExpansions(Collection<? extends Term> terms) {
+    List<SqlParameterSource> batch = new ArrayList<>();
+    for (int[] link : this.getLinksAdded(terms, PostGresTerm::getExpansionsAdded)) {
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("termexp_term_id", link[0]);
+      paramSource.addValue("termexp_expansion_id", link[1]);
+      batch.add(paramSource);
+    }
+
+    if (batch.size() > 0) {
       NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
       String sql = "INSERT INTO term_expansions (termexp_term_id, termexp_expansion_id)"
-          + " VALUES (:termexp_term_id, :termexp_expansion_id)";
-      MapSqlParameterSource paramSource = new MapSqlParameterSource();
-      paramSource.addValue("termexp_term_id", iTerm.getId());
-      paramSource.addValue("termexp_expansion_id", ((PostGresTerm) expansion).getId());
+          + " VALUES (:termexp_term_id, :termexp_expansion_id)"
+          + " ON CONFLICT ON CONSTRAINT pk_termexp DO NOTHING";
 
       LOG.trace(sql);
-      LogParameters(paramSource);
-      jt.update(sql, paramSource);
+      LOG.trace("Batch size: " + batch.size());
+      jt.batchUpdate(sql, batch.toArray(new SqlParameterSource[batch.size()]));
     }
-    iTerm.getExpansionSet().cleanSlate();
+
+    for (Term term : terms)
+      ((PostGresTerm) term).cleanSlateExpansions();
   }
 
-  void saveHeads(Term term) {
-    PostGresTerm iTerm = (PostGresTerm) term;
-    for (Term head : iTerm.getHeadSet().getItemsAdded()) {
+  /**
+   * Insert the heads added to these terms in a single JDBC batch.
+   */
+  void saveHeads(Collection<? extends Term> terms) {
+    List<SqlParameterSource> batch = new ArrayList<>();
+    for (int[] link : this.getLinksAdded(terms, PostGresTerm::getHeadsAdded)) {
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("termhead_term_id", link[0]);
+      paramSource.addValue("termhead_head_id", link[1]);
+      batch.add(paramSource);
+    }
+
+    if (batch.size() > 0) {
       NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
       String sql = "INSERT INTO term_heads (termhead_term_id, termhead_head_id)"
-          + " VALUES (:termhead_term_id, :termhead_head_id)";
+          + " VALUES (:termhead_term_id, :termhead_head_id)"
+          + " ON CONFLICT ON CONSTRAINT pk_termhead DO NOTHING";
+
+      LOG.trace(sql);
+      LOG.trace("Batch size: " + batch.size());
+      jt.batchUpdate(sql, batch.toArray(new SqlParameterSource[batch.size()]));
+    }
+
+    for (Term term : terms)
+      ((PostGresTerm) term).cleanSlateHeads();
+  }
+
+  /**
+   * Stream new terms to the database via COPY, through a staging table so that
+   * terms inserted by another process in the meantime are not duplicated. The
+   * terms must be sorted by text.
+   */
+  void copyTerms(List<PostGresTerm> terms) {
+    if (terms.size() == 0)
+      return;
+
+    List<PostGresTerm> distinctTerms = this.distinctTerms(terms);
+    List<Integer> termIds = termIdAllocator.nextIds(distinctTerms.size());
+    CopyWriter copyWriter = new CopyWriter();
+    for (int i = 0; i < distinctTerms.size(); i++) {
+      PostGresTerm term = distinctTerms.get(i);
+      copyWriter.add(termIds.get(i)).add(term.isMarked()).add(term.getText()).add(term.getLexicalWordCount()).endRow();
+    }
+
+    String copySql = "COPY term_staging (" + SELECT_TERM_ONLY + ") FROM STDIN";
+    String insertSql = "INSERT INTO term (" + SELECT_TERM_ONLY + ")"
+        + " SELECT " + SELECT_TERM_ONLY + " FROM term_staging"
+        // ids are allocated in ascending order, so this is the order by text
+        + " ORDER BY term_id"
+        + " ON CONFLICT (term_text) DO UPDATE SET term_text = EXCLUDED.term_text"
+        + " RETURNING term_id, term_text";
+
+    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+    Map<String, Integer> idsByText = jt.getJdbcOperations().execute((ConnectionCallback<Map<String, Integer>>) connection -> {
+      try (Statement statement = connection.createStatement()) {
+        this.prepareStagingTable(statement, "term_staging", "term");
+        LOG.trace(copySql);
+        copyWriter.copyIn(connection, copySql);
+
+        LOG.trace(insertSql);
+        Map<String, Integer> ids = new HashMap<>();
+        try (ResultSet rs = statement.executeQuery(insertSql)) {
+          while (rs.next())
+            ids.put(rs.getString("term_text"), rs.getInt("term_id"));
+        }
+        return ids;
+      }
+    });
+
+    for (PostGresTerm term : terms) {
+      term.setId(idsByText.get(term.getText()));
+      term.setDirty(false);
+      this.cacheTerm(term);
+    }
+  }
+
+  /**
+   * Insert new terms with a single statement per batch, each column being
+   * passed as an array. If another process has inserted the same term in the
+   * meantime, we get its id back instead. The terms must be sorted by text.
+   */
+  void insertTerms(List<PostGresTerm> terms) {
+    if (terms.size() == 0)
+      return;
+
+    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+    String sql = "INSERT INTO term (" + SELECT_TERM_ONLY + ")"
+        + " SELECT " + SELECT_TERM_ONLY
+        + " FROM unnest(CAST(:term_ids AS integer[]), CAST(:term_marked AS boolean[]), CAST(:term_texts AS text[]), CAST(:term_lexical_words AS smallint[]))"
+        + " WITH ORDINALITY AS t(" + SELECT_TERM_ONLY + ", term_order)"
+        + " ORDER BY term_order"
+        + " ON CONFLICT (term_text) DO UPDATE SET term_text = EXCLUDED.term_text"
+        + " RETURNING term_id, term_text";
+
+    Map<String, Integer> idsByText = new HashMap<>();
+    for (List<PostGresTerm> batch : ListUtils.partition(this.distinctTerms(terms), INSERT_BATCH_SIZE)) {
+      List<Integer> termIds = termIdAllocator.nextIds(batch.size());
+      int[] ids = new int[batch.size()];
+      boolean[] marked = new boolean[batch.size()];
+      String[] texts = new String[batch.size()];
+      int[] lexicalWords = new int[batch.size()];
+      for (int i = 0; i < batch.size(); i++) {
+        PostGresTerm term = batch.get(i);
+        ids[i] = termIds.get(i);
+        marked[i] = term.isMarked();
+        texts[i] = term.getText();
+        lexicalWords[i] = term.getLexicalWordCount();
+      }
+
       MapSqlParameterSource paramSource = new MapSqlParameterSource();
-      paramSource.addValue("termhead_head_id", ((PostGresTerm) head).getId());
-      paramSource.addValue("termhead_term_id", iTerm.getId());
+      paramSource.addValue("term_ids", ids);
+      paramSource.addValue("term_marked", marked);
+      paramSource.addValue("term_texts", texts);
+      paramSource.addValue("term_lexical_words", lexicalWords);
 
       LOG.trace(sql);
-      LogParameters(paramSource);
-      jt.update(sql, paramSource);
+      LOG.trace("Batch size: " + batch.size());
+      jt.query(sql, paramSource, (RowCallbackHandler) rs -> idsByText.put(rs.getString("term_text"), rs.getInt("term_id")));
+    }
+
+    for (PostGresTerm term : terms) {
+      term.setId(idsByText.get(term.getText()));
+      term.setDirty(false);
+      this.cacheTerm(term);
+    }
+  }
+
+  /**
+   * The first of each run of terms with the same text, in a list sorted by
+   * text: a single statement cannot insert the same term twice.
+   */
+  private List<PostGresTerm> distinctTerms(List<PostGresTerm> terms) {
+    List<PostGresTerm> distinctTerms = new ArrayList<>(terms.size());
+    String previousText = null;
+    for (PostGresTerm term : terms) {
+      if (!term.getText().equals(previousText))
+        distinctTerms.add(term);
+      previousText = term.getText();
+    }
+    return distinctTerms;
+  }
+
+  /**
+   * Insert new contexts with a single statement per batch, each column being
+   * passed as an array. Contexts which already exist are skipped. The
+   * contexts must be sorted by their unique key.
+   *
+   * @return the contexts actually inserted
+   */
+  List<PostGresContext> insertContexts(List<PostGresContext> contexts) {
+    List<PostGresContext> insertedContexts = new ArrayList<>();
+    if (contexts.size() == 0)
+      return insertedContexts;
+
+    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+    String sql = "INSERT INTO context (context_id, context_start_row, context_start_column, context_end_row, context_end_column, context_text, context_file_id, context_term_id, context_project_id)"
+        + " SELECT context_id, context_start_row, context_start_column, context_end_row, context_end_column, context_text, context_file_id, context_term_id, :project_id"
+        + " FROM unnest(CAST(:context_ids AS integer[]), CAST(:start_rows AS integer[]), CAST(:start_columns AS integer[]),"
+        + " CAST(:end_rows AS integer[]), CAST(:end_columns AS integer[]), CAST(:texts AS text[]),"
+        + " CAST(:file_ids AS integer[]), CAST(:term_ids AS integer[]))"
+        + " WITH ORDINALITY AS c(context_id, context_start_row, context_start_column, context_end_row, context_end_column, context_text, context_file_id, context_term_id, context_order)"
+        + " ORDER BY context_order"
+        + " ON CONFLICT ON CONSTRAINT uk_context DO NOTHING"
+        + " RETURNING context_id";
+
+    for (List<PostGresContext> batch : ListUtils.partition(contexts, INSERT_BATCH_SIZE)) {
+      List<Integer> contextIds = contextIdAllocator.nextIds(batch.size());
+      Map<Integer, PostGresContext> contextMap = new HashMap<>();
+      int[] ids = new int[batch.size()];
+      int[] startRows = new int[batch.size()];
+      int[] startColumns = new int[batch.size()];
+      int[] endRows = new int[batch.size()];
+      int[] endColumns = new int[batch.size()];
+      String[] texts = new String[batch.size()];
+      int[] fileIds = new int[batch.size()];
+      int[] termIds = new int[batch.size()];
+      for (int i = 0; i < batch.size(); i++) {
+        PostGresContext context = batch.get(i);
+        ids[i] = contextIds.get(i);
+        contextMap.put(ids[i], context);
+        startRows[i] = context.getLineNumber();
+        startColumns[i] = context.getColumnNumber();
+        endRows[i] = context.getEndLineNumber();
+        endColumns[i] = context.getEndColumnNumber();
+        texts[i] = context.getTextSegment();
+        fileIds[i] = context.getFileId();
+        termIds[i] = context.getTermId();
+      }
+
+      MapSqlParameterSource paramSource = new MapSqlParameterSource();
+      paramSource.addValue("project_id", this.getCurrentProjectId());
+      paramSource.addValue("context_ids", ids);
+      paramSource.addValue("start_rows", startRows);
+      paramSource.addValue("start_columns", startColumns);
+      paramSource.addValue("end_rows", endRows);
+      paramSource.addValue("end_columns", endColumns);
+      paramSource.addValue("texts", texts);
+      paramSource.addValue("file_ids", fileIds);
+      paramSource.addValue("term_ids", termIds);
+
+      LOG.trace(sql);
+      LOG.trace("Batch size: " + batch.size());
+      jt.query(sql, paramSource, (RowCallbackHandler) rs -> {
+        PostGresContext context = contextMap.get(rs.getInt("context_id"));
+        context.setId(rs.getInt("context_id"));
+        insertedContexts.add(context);
+      });
+
+      for (PostGresContext context : batch)
+        context.setDirty(false);
+    }
+    return insertedContexts;
+  }
+
+  /**
+   * Stream new contexts to the database via COPY, through a staging table so
+   * that contexts which already exist are skipped. The contexts must be sorted
+   * by their unique key.
+   *
+   * @return the contexts actually inserted
+   */
+  List<PostGresContext> copyContexts(List<PostGresContext> contexts) {
+    if (contexts.size() == 0)
+      return new ArrayList<>();
+
+    List<Integer> contextIds = contextIdAllocator.nextIds(contexts.size());
+    Map<Integer, PostGresContext> contextMap = new HashMap<>();
+    CopyWriter copyWriter = new CopyWriter();
+    for (int i = 0; i < contexts.size(); i++) {
+      PostGresContext context = contexts.get(i);
+      int contextId = contextIds.get(i);
+      contextMap.put(contextId, context);
+      copyWriter.add(contextId)
+          .add(context.getLineNumber())
+          .add(context.getColumnNumber())
+          .add(context.getEndLineNumber())
+          .add(context.getEndColumnNumber())
+          .add(context.getTextSegment())
+          .add(context.getFileId())
+          .add(context.getTermId())
+          .add(this.getCurrentProjectId())
+          .endRow();
     }
-    iTerm.getHeadSet().cleanSlate();
+
+    String copySql = "COPY context_staging (" + SELECT_CONTEXT + ") FROM STDIN";
+    String insertSql = "INSERT INTO context (" + SELECT_CONTEXT + ")"
+        + " SELECT " + SELECT_CONTEXT + " FROM context_staging"
+        // ids are allocated in ascending order, so this is the order by key
+        + " ORDER BY context_id"
+        + " ON CONFLICT ON CONSTRAINT uk_context DO NOTHING"
+        + " RETURNING context_id";
+
+    NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+    List<Integer> insertedIds = jt.getJdbcOperations().execute((ConnectionCallback<List<Integer>>) connection -> {
+      try (Statement statement = connection.createStatement()) {
+        this.prepareStagingTable(statement, "context_staging", "context");
+        LOG.trace(copySql);
+        copyWriter.copyIn(connection, copySql);
+
+        LOG.trace(insertSql);
+        List<Integer> ids = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery(insertSql)) {
+          while (rs.next())
+            ids.add(rs.getInt(1));
+        }
+        return ids;
+      }
+    });
+
+    // contexts which were skipped remain without an id
+    List<PostGresContext> insertedContexts = new ArrayList<>(insertedIds.size());
+    for (int contextId : insertedIds) {
+      PostGresContext context = contextMap.get(contextId);
+      context.setId(contextId);
+      insertedContexts.add(context);
+    }
+    for (PostGresContext context : contexts)
+      context.setDirty(false);
+    return insertedContexts;
+  }
+
+  /**
+   * Stream the heads and expansions added to these terms to the database via
+   * COPY, through staging tables so that existing relations are skipped.
+   */
+  void copyRelations(Collection<? extends Term> terms) {
+    CopyWriter expansionWriter = new CopyWriter();
+    for (int[] link : this.getLinksAdded(terms, PostGresTerm::getExpansionsAdded))
+      expansionWriter.add(link[0]).add(link[1]).endRow();
+    CopyWriter headWriter = new CopyWriter();
+    for (int[] link : this.getLinksAdded(terms, PostGresTerm::getHeadsAdded))
+      headWriter.add(link[0]).add(link[1]).endRow();
+
+    if (expansionWriter.getRowCount() > 0 || headWriter.getRowCount() > 0) {
+      NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+      jt.getJdbcOperations().execute((ConnectionCallback<Void>) connection -> {
+        try (Statement statement = connection.createStatement()) {
+          if (expansionWriter.getRowCount() > 0) {
+            this.prepareStagingTable(statement, "term_expansions_staging", "term_expansions");
+            String sql = "COPY term_expansions_staging (termexp_term_id, termexp_expansion_id) FROM STDIN";
+            LOG.trace(sql);
+            expansionWriter.copyIn(connection, sql);
+
+            sql = "INSERT INTO term_expansions (termexp_term_id, termexp_expansion_id)"
+                + " SELECT termexp_term_id, termexp_expansion_id FROM term_expansions_staging"
+                + " ORDER BY termexp_term_id, termexp_expansion_id"
+                + " ON CONFLICT ON CONSTRAINT pk_termexp DO NOTHING";
+            LOG.trace(sql);
+            statement.executeUpdate(sql);
+          }
+          if (headWriter.getRowCount() > 0) {
+            this.prepareStagingTable(statement, "term_heads_staging", "term_heads");
+            String sql = "COPY term_heads_staging (termhead_term_id, termhead_head_id) FROM STDIN";
+            LOG.trace(sql);
+            headWriter.copyIn(connection, sql);
+
+            sql = "INSERT INTO term_heads (termhead_term_id, termhead_head_id)"
+                + " SELECT termhead_term_id, termhead_head_id FROM term_heads_staging"
+                + " ORDER BY termhead_term_id, termhead_head_id"
+                + " ON CONFLICT ON CONSTRAINT pk_termhead DO NOTHING";
+            LOG.trace(sql);
+            statement.executeUpdate(sql);
+          }
+        }
+        return null;
+      });
+    }
+
+    for (Term term : terms) {
+      PostGresTerm termInternal = (PostGresTerm) term;
+      termInternal.cleanSlateExpansions();
+      termInternal.cleanSlateHeads();
+    }
+  }
+
+  /**
+   * The heads or expansions added to these terms, as pairs of term id and
+   * linked term id, sorted by key.
+   */
+  private List<int[]> getLinksAdded(Collection<? extends Term> terms, Function<PostGresTerm, Set<Term>> linksAdded) {
+    List<int[]> links = new ArrayList<>();
+    for (Term term : terms) {
+      PostGresTerm termInternal = (PostGresTerm) term;
+      for (Term linkedTerm : linksAdded.apply(termInternal))
+        links.add(new int[] { termInternal.getId(), ((PostGresTerm) linkedTerm).getId() });
+    }
+    links.sort(LINK_KEY_ORDER);
+    return links;
+  }
+
+  /**
+   * Staging tables are temporary tables which live as long as the pooled
+   * connection, and are emptied before each use.
+   */
+  private void prepareStagingTable(Statement statement, String stagingTable, String table) throws SQLException {
+    String sql = "CREATE TEMPORARY TABLE IF NOT EXISTS " + stagingTable + " (LIKE " + table + ")";
+    LOG.trace(sql);
+    statement.execute(sql);
+    sql = "TRUNCATE " + stagingTable;
+    LOG.trace(sql);
+    statement.execute(sql);
   }
 
   PostGresTerm newTerm() {
@@ -774,9 +1769,9 @@ public class PostGresTerminologyBase implements TerminologyBase {
     
     NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
     
-    String sql = "DELETE FROM context";
+    String sql = "SELECT drop_project_partitions(project_id) FROM project";
     MapSqlParameterSource paramSource = new MapSqlParameterSource();
-    jt.update(sql, paramSource);
+    jt.queryForRowSet(sql, paramSource);
     
     sql = "DELETE FROM file";
     paramSource = new MapSqlParameterSource();
@@ -797,5 +1792,9 @@ public class PostGresTerminologyBase implements TerminologyBase {
     sql = "DELETE FROM term";
     paramSource = new MapSqlParameterSource();
     jt.update(sql, paramSource);
+
+    if (termCache != null)
+      termCache.clear();
+    projectId = 0;
   }
 }
@@ -0,0 +1,111 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology.postgres;
+
+import com.joliciel.talismane.terminology.BoundedCache;
+
+/**
+ * A bounded, least-recently-used cache mapping a term's text to its id and
+ * lexical word count, so that terms which recur constantly during extraction
+ * are only looked up in the database once. It can be shared by several
+ * threads without locking on reads.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class TermCache {
+  private final BoundedCache<String, CachedTerm> cache;
+
+  TermCache(int maxSize) {
+    this.cache = new BoundedCache<>(maxSize);
+  }
+
+  CachedTerm get(String text) {
+    return cache.get(text);
+  }
+
+  void put(String text, int termId, int lexicalWordCount) {
+    cache.put(text, new CachedTerm(termId, lexicalWordCount));
+  }
+
+  void clear() {
+    cache.clear();
+  }
+
+  /**
+   * The maximum number of terms held in the cache.
+   */
+  public int getMaxSize() {
+    return cache.getMaxSize();
+  }
+
+  /**
+   * The number of terms currently held in the cache.
+   */
+  public int getSize() {
+    return cache.getSize();
+  }
+
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  /**
+   * The number of terms removed from the cache to make room for new ones.
+   */
+  public long getEvictionCount() {
+    return cache.getEvictionCount();
+  }
+
+  /**
+   * The proportion of lookups found in the cache, or 0 if there haven't been
+   * any lookups yet.
+   */
+  public double getHitRate() {
+    return cache.getHitRate();
+  }
+
+  @Override
+  public String toString() {
+    return "TermCache [size=" + cache.getSize() + ", maxSize=" + cache.getMaxSize() + ", hits=" + cache.getHitCount() + ", misses="
+        + cache.getMissCount() + ", evictions=" + cache.getEvictionCount() + "]";
+  }
+
+  static final class CachedTerm {
+    private final int termId;
+    private final int lexicalWordCount;
+
+    private CachedTerm(int termId, int lexicalWordCount) {
+      this.termId = termId;
+      this.lexicalWordCount = lexicalWordCount;
+    }
+
+    int getTermId() {
+      return termId;
+    }
+
+    int getLexicalWordCount() {
+      return lexicalWordCount;
+    }
+  }
+}
@@ -0,0 +1,460 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology.postgres;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the latency and row count of each {@link PostGresTerminologyBase}
+ * operation in a fixed-bucket histogram, along with connection pool and term
+ * cache statistics. Statistics are kept in memory only, and can be read over
+ * JMX or logged with {@link #toString()}.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class TerminologyMetrics implements TerminologyMetricsMXBean, MetricsTrackerFactory {
+  private static final Logger LOG = LoggerFactory.getLogger(TerminologyMetrics.class);
+
+  private static final long[] BUCKETS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+  private final Map<String, Operation> operations = new ConcurrentSkipListMap<>();
+  private final Map<String, Pool> pools = new ConcurrentSkipListMap<>();
+  private TermCache termCache;
+  private ObjectName objectName = null;
+
+  TerminologyMetrics() {
+  }
+
+  void setTermCache(TermCache termCache) {
+    this.termCache = termCache;
+  }
+
+  /**
+   * Start timing an operation, which is recorded when the timer is closed.
+   */
+  Timer time(String operationName) {
+    return new Timer(operations.computeIfAbsent(operationName, Operation::new));
+  }
+
+  /**
+   * Record a call to an operation whose duration is already known.
+   */
+  void record(String operationName, long nanos, long rows) {
+    operations.computeIfAbsent(operationName, Operation::new).record(nanos, rows);
+  }
+
+  /**
+   * Register these metrics with the platform MBean server, replacing any
+   * metrics already registered for the same project.
+   */
+  void register(String projectCode) {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(
+          "com.joliciel.talismane.terminology:type=TerminologyMetrics,project=" + ObjectName.quote(String.valueOf(projectCode)));
+      if (mBeanServer.isRegistered(objectName))
+        mBeanServer.unregisterMBean(objectName);
+      mBeanServer.registerMBean(this, objectName);
+      this.objectName = objectName;
+    } catch (JMException e) {
+      LOG.warn("Unable to register terminology metrics", e);
+    }
+  }
+
+  /**
+   * Remove these metrics from the platform MBean server, if they were
+   * registered.
+   */
+  void unregister() {
+    if (objectName == null)
+      return;
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      if (mBeanServer.isRegistered(objectName))
+        mBeanServer.unregisterMBean(objectName);
+    } catch (JMException e) {
+      LOG.warn("Unable to unregister terminology metrics", e);
+    }
+    objectName = null;
+  }
+
+  @Override
+  public IMetricsTracker create(String poolName, PoolStats poolStats) {
+    Pool pool = new Pool(poolName, poolStats);
+    pools.put(poolName, pool);
+    return pool;
+  }
+
+  @Override
+  public List<OperationStatistics> getOperations() {
+    List<OperationStatistics> statistics = new ArrayList<>(operations.size());
+    for (Operation operation : operations.values())
+      statistics.add(operation.getStatistics());
+    return statistics;
+  }
+
+  @Override
+  public List<PoolStatistics> getPools() {
+    List<PoolStatistics> statistics = new ArrayList<>(pools.size());
+    for (Pool pool : pools.values())
+      statistics.add(pool.getStatistics());
+    return statistics;
+  }
+
+  @Override
+  public long[] getHistogramBucketsMillis() {
+    return BUCKETS_MILLIS.clone();
+  }
+
+  @Override
+  public long getTermCacheHitCount() {
+    return termCache == null ? 0 : termCache.getHitCount();
+  }
+
+  @Override
+  public long getTermCacheMissCount() {
+    return termCache == null ? 0 : termCache.getMissCount();
+  }
+
+  @Override
+  public double getTermCacheHitRate() {
+    return termCache == null ? 0.0 : termCache.getHitRate();
+  }
+
+  @Override
+  public int getTermCacheSize() {
+    return termCache == null ? 0 : termCache.getSize();
+  }
+
+  @Override
+  public void reset() {
+    operations.clear();
+    for (Pool pool : pools.values())
+      pool.reset();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("TerminologyMetrics");
+    for (OperationStatistics statistics : this.getOperations())
+      sb.append("\n  ").append(statistics);
+    for (PoolStatistics statistics : this.getPools())
+      sb.append("\n  ").append(statistics);
+    if (termCache != null)
+      sb.append("\n  ").append(termCache);
+    return sb.toString();
+  }
+
+  private static int getBucket(long nanos) {
+    long millis = nanos / 1000000;
+    int i = 0;
+    while (i < BUCKETS_MILLIS.length && millis >= BUCKETS_MILLIS[i])
+      i++;
+    return i;
+  }
+
+  /**
+   * Times a single operation call.
+   */
+  static final class Timer implements AutoCloseable {
+    private final Operation operation;
+    private final long startTime = System.nanoTime();
+    private long rows = 0;
+
+    private Timer(Operation operation) {
+      this.operation = operation;
+    }
+
+    /**
+     * Set the number of rows read or written by the operation.
+     */
+    void setRows(long rows) {
+      this.rows = rows;
+    }
+
+    long getRows() {
+      return rows;
+    }
+
+    void addRow() {
+      this.rows++;
+    }
+
+    @Override
+    public void close() {
+      operation.record(System.nanoTime() - startTime, rows);
+    }
+  }
+
+  private static final class Operation {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder rows = new LongAdder();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS_MILLIS.length + 1);
+
+    private Operation(String name) {
+      this.name = name;
+    }
+
+    void record(long nanos, long rowCount) {
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+      rows.add(rowCount);
+      histogram.incrementAndGet(getBucket(nanos));
+    }
+
+    void reset() {
+      count.reset();
+      totalNanos.reset();
+      maxNanos.reset();
+      rows.reset();
+      for (int i = 0; i < histogram.length(); i++)
+        histogram.set(i, 0);
+    }
+
+    OperationStatistics getStatistics() {
+      long[] buckets = new long[histogram.length()];
+      for (int i = 0; i < buckets.length; i++)
+        buckets[i] = histogram.get(i);
+      return new OperationStatistics(name, count.sum(), totalNanos.sum(), maxNanos.get(), rows.sum(), buckets);
+    }
+  }
+
+  private static final class Pool implements IMetricsTracker {
+    private final String name;
+    private final PoolStats poolStats;
+    private final Operation acquire;
+    private final LongAdder timeouts = new LongAdder();
+
+    private Pool(String name, PoolStats poolStats) {
+      this.name = name;
+      this.poolStats = poolStats;
+      this.acquire = new Operation(name + ".acquire");
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+      acquire.record(elapsedAcquiredNanos, 0);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+      timeouts.increment();
+    }
+
+    void reset() {
+      acquire.reset();
+      timeouts.reset();
+    }
+
+    PoolStatistics getStatistics() {
+      return new PoolStatistics(name, poolStats.getActiveConnections(), poolStats.getIdleConnections(), poolStats.getPendingThreads(),
+          poolStats.getTotalConnections(), poolStats.getMaxConnections(), timeouts.sum(), acquire.getStatistics());
+    }
+  }
+
+  /**
+   * A snapshot of an operation's statistics.
+   */
+  public static final class OperationStatistics {
+    private final String name;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long rows;
+    private final long[] histogram;
+
+    OperationStatistics(String name, long count, long totalNanos, long maxNanos, long rows, long[] histogram) {
+      this.name = name;
+      this.count = count;
+      this.totalNanos = totalNanos;
+      this.maxNanos = maxNanos;
+      this.rows = rows;
+      this.histogram = histogram;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * The number of rows read or written, for operations which keep track.
+     */
+    public long getRows() {
+      return rows;
+    }
+
+    public double getTotalMillis() {
+      return totalNanos / 1000000.0;
+    }
+
+    public double getMeanMillis() {
+      return count == 0 ? 0.0 : totalNanos / 1000000.0 / count;
+    }
+
+    public double getMaxMillis() {
+      return maxNanos / 1000000.0;
+    }
+
+    /**
+     * An upper bound for the median latency, from the histogram.
+     */
+    public double getP50Millis() {
+      return this.getPercentileMillis(0.50);
+    }
+
+    /**
+     * An upper bound for the 95th percentile latency, from the histogram.
+     */
+    public double getP95Millis() {
+      return this.getPercentileMillis(0.95);
+    }
+
+    /**
+     * An upper bound for the 99th percentile latency, from the histogram.
+     */
+    public double getP99Millis() {
+      return this.getPercentileMillis(0.99);
+    }
+
+    /**
+     * The number of calls in each latency bucket, as given by
+     * {@link TerminologyMetricsMXBean#getHistogramBucketsMillis()}.
+     */
+    public long[] getHistogram() {
+      return histogram.clone();
+    }
+
+    private double getPercentileMillis(double percentile) {
+      long threshold = (long) Math.ceil(count * percentile);
+      long cumulative = 0;
+      for (int i = 0; i < BUCKETS_MILLIS.length; i++) {
+        cumulative += histogram[i];
+        if (cumulative >= threshold)
+          return Math.min(BUCKETS_MILLIS[i], this.getMaxMillis());
+      }
+      return this.getMaxMillis();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: count=%d, rows=%d, total=%.1fms, mean=%.2fms, p50<=%.1fms, p95<=%.1fms, p99<=%.1fms, max=%.1fms", name, count,
+          rows, this.getTotalMillis(), this.getMeanMillis(), this.getP50Millis(), this.getP95Millis(), this.getP99Millis(),
+          this.getMaxMillis());
+    }
+  }
+
+  /**
+   * A snapshot of a connection pool's statistics.
+   */
+  public static final class PoolStatistics {
+    private final String name;
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int pendingThreads;
+    private final int totalConnections;
+    private final int maxConnections;
+    private final long connectionTimeouts;
+    private final OperationStatistics connectionWait;
+
+    PoolStatistics(String name, int activeConnections, int idleConnections, int pendingThreads, int totalConnections, int maxConnections,
+        long connectionTimeouts, OperationStatistics connectionWait) {
+      this.name = name;
+      this.activeConnections = activeConnections;
+      this.idleConnections = idleConnections;
+      this.pendingThreads = pendingThreads;
+      this.totalConnections = totalConnections;
+      this.maxConnections = maxConnections;
+      this.connectionTimeouts = connectionTimeouts;
+      this.connectionWait = connectionWait;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getActiveConnections() {
+      return activeConnections;
+    }
+
+    public int getIdleConnections() {
+      return idleConnections;
+    }
+
+    /**
+     * The number of threads waiting for a connection.
+     */
+    public int getPendingThreads() {
+      return pendingThreads;
+    }
+
+    public int getTotalConnections() {
+      return totalConnections;
+    }
+
+    public int getMaxConnections() {
+      return maxConnections;
+    }
+
+    /**
+     * The number of times a connection couldn't be obtained within the
+     * checkout timeout.
+     */
+    public long getConnectionTimeouts() {
+      return connectionTimeouts;
+    }
+
+    /**
+     * The time spent waiting to obtain a connection from the pool.
+     */
+    public OperationStatistics getConnectionWait() {
+      return connectionWait;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: active=%d, idle=%d, pending=%d, total=%d, max=%d, timeouts=%d, wait=[%s]", name, activeConnections,
+          idleConnections, pendingThreads, totalConnections, maxConnections, connectionTimeouts, connectionWait);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.terminology.postgres;
+
+import java.util.List;
+
+/**
+ * Timings and statistics for a {@link PostGresTerminologyBase}, exposed over
+ * JMX.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public interface TerminologyMetricsMXBean {
+  /**
+   * Latency statistics for each operation called so far, by operation name.
+   */
+  public List<TerminologyMetrics.OperationStatistics> getOperations();
+
+  /**
+   * Statistics for each connection pool.
+   */
+  public List<TerminologyMetrics.PoolStatistics> getPools();
+
+  /**
+   * The upper bound of each bucket in
+   * {@link TerminologyMetrics.OperationStatistics#getHistogram()}, in
+   * milliseconds. The last bucket, which has no upper bound, is not included.
+   */
+  public long[] getHistogramBucketsMillis();
+
+  public long getTermCacheHitCount();
+
+  public long getTermCacheMissCount();
+
+  /**
+   * The term cache hit rate, or 0 if the term cache is disabled.
+   */
+  public double getTermCacheHitRate();
+
+  public int getTermCacheSize();
+
+  /**
+   * Clear all operation statistics.
+   */
+  public void reset();
+}
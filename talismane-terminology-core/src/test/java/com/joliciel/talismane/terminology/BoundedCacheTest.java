@@ -0,0 +1,44 @@
+package com.joliciel.talismane.terminology;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BoundedCacheTest {
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() throws Exception {
+    BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+    cache.put("chat", 1);
+    cache.put("chien", 2);
+
+    // "chat" is now more recently used than "chien"
+    assertEquals(Integer.valueOf(1), cache.get("chat"));
+    cache.put("petit chat", 3);
+
+    assertNull(cache.get("chien"));
+    assertEquals(Integer.valueOf(3), cache.get("petit chat"));
+    assertEquals(Integer.valueOf(1), cache.get("chat"));
+
+    assertEquals(2, cache.getSize());
+    assertEquals(3, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(0.75, cache.getHitRate(), 0.0001);
+  }
+
+  @Test
+  public void testEvictionMakesRoomForMore() throws Exception {
+    BoundedCache<Integer, Integer> cache = new BoundedCache<>(20);
+    for (int i = 0; i < 21; i++)
+      cache.put(i, i);
+
+    // the oldest entry is evicted, along with a tenth of the maximum size
+    assertEquals(18, cache.getSize());
+    assertEquals(3, cache.getEvictionCount());
+    for (int i = 0; i < 3; i++)
+      assertNull(cache.get(i));
+    assertEquals(Integer.valueOf(3), cache.get(3));
+  }
+}
@@ -0,0 +1,55 @@
+package com.joliciel.talismane.terminology;
+
+import com.joliciel.talismane.parser.DependencyNode;
+import com.joliciel.talismane.posTagger.PosTaggedToken;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ExpansionSpanTest {
+
+  @Test
+  public void testContiguity() throws Exception {
+    assertTrue(new ExpansionSpan(3, 3, 1, 1).isContiguous());
+    assertTrue(new ExpansionSpan(2, 5, 4, 2).isContiguous());
+    // a gap between the kernel and its dependent
+    assertFalse(new ExpansionSpan(2, 5, 3, 2).isContiguous());
+  }
+
+  @Test
+  public void testSpanOfNode() throws Exception {
+    DependencyNode chat = node(3);
+    DependencyNode petit = node(2);
+    DependencyNode noir = node(5);
+    Set<DependencyNode> dependents = new LinkedHashSet<>();
+    dependents.add(petit);
+    dependents.add(noir);
+    when(chat.getDependents()).thenReturn(dependents);
+    Set<String> zeroDepthLabels = Collections.singleton("det");
+    when(chat.getPerceivedDepth(zeroDepthLabels)).thenReturn(2);
+
+    ExpansionSpan span = ExpansionSpan.of(chat, zeroDepthLabels);
+    assertEquals(2, span.getFirstIndex());
+    assertEquals(5, span.getLastIndex());
+    assertEquals(3, span.getTokenCount());
+    assertEquals(2, span.getPerceivedDepth());
+    assertFalse(span.isContiguous());
+  }
+
+  private DependencyNode node(int index) {
+    PosTaggedToken token = mock(PosTaggedToken.class);
+    when(token.getIndex()).thenReturn(index);
+    DependencyNode node = mock(DependencyNode.class);
+    when(node.getPosTaggedToken()).thenReturn(token);
+    when(node.getDependents()).thenReturn(Collections.emptySet());
+    return node;
+  }
+}
@@ -0,0 +1,65 @@
+package com.joliciel.talismane.terminology;
+
+import com.joliciel.talismane.lexicon.LexicalEntry;
+import com.joliciel.talismane.posTagger.PosTag;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LexiconCacheTest {
+
+  @Test
+  public void testLookupsAreCached() throws Exception {
+    AtomicInteger lemmaLookups = new AtomicInteger();
+    AtomicInteger knownWordLookups = new AtomicInteger();
+    LexiconCache lexiconCache = new LexiconCache(10, (sessionId, entry, posTag, gender, number) -> {
+      lemmaLookups.incrementAndGet();
+      return "chat";
+    }, (sessionId, word) -> {
+      knownWordLookups.incrementAndGet();
+      return word.equals("Paris") ? "Paris" : null;
+    });
+
+    LexicalEntry chats = mock(LexicalEntry.class);
+    PosTag nc = mock(PosTag.class);
+    when(nc.getCode()).thenReturn("NC");
+
+    assertEquals("chat", lexiconCache.getLemmaForm("test", chats, nc, null, "s"));
+    assertEquals("chat", lexiconCache.getLemmaForm("test", chats, nc, null, "s"));
+    assertEquals(1, lemmaLookups.get());
+    assertEquals(1, lexiconCache.getLemmaFormHitCount());
+    assertEquals(1, lexiconCache.getLemmaFormMissCount());
+    assertEquals(0.5, lexiconCache.getLemmaFormHitRate(), 0.0001);
+
+    assertEquals("Paris", lexiconCache.getKnownWord("test", "Paris"));
+    assertEquals("Paris", lexiconCache.getKnownWord("test", "Paris"));
+    // words without a known form are only looked up once too
+    assertNull(lexiconCache.getKnownWord("test", "Xyz"));
+    assertNull(lexiconCache.getKnownWord("test", "Xyz"));
+    assertEquals(2, knownWordLookups.get());
+    assertEquals(2, lexiconCache.getKnownWordHitCount());
+    assertEquals(2, lexiconCache.getKnownWordMissCount());
+    assertEquals(2, lexiconCache.getKnownWordCount());
+  }
+
+  @Test
+  public void testDisabledCacheLooksUpEveryTime() throws Exception {
+    AtomicInteger knownWordLookups = new AtomicInteger();
+    LexiconCache lexiconCache = new LexiconCache(0, (sessionId, entry, posTag, gender, number) -> null, (sessionId, word) -> {
+      knownWordLookups.incrementAndGet();
+      return word;
+    });
+
+    assertEquals("Paris", lexiconCache.getKnownWord("test", "Paris"));
+    assertEquals("Paris", lexiconCache.getKnownWord("test", "Paris"));
+    assertEquals(2, knownWordLookups.get());
+    assertEquals(0, lexiconCache.getKnownWordCount());
+    assertEquals(0, lexiconCache.getKnownWordHitCount());
+    assertEquals(0, lexiconCache.getKnownWordMissCount());
+  }
+}
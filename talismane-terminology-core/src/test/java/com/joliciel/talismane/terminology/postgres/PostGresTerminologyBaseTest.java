@@ -2,17 +2,30 @@ package com.joliciel.talismane.terminology.postgres;
 
 import com.joliciel.talismane.terminology.Context;
 import com.joliciel.talismane.terminology.Term;
+import com.joliciel.talismane.terminology.TermSearchMode;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import com.zaxxer.hikari.HikariDataSource;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
 
 public class PostGresTerminologyBaseTest {
   Config config = ConfigFactory.load();
@@ -163,4 +176,363 @@ public class PostGresTerminologyBaseTest {
     assertEquals(expectedExpansions, expansions);
   }
   
+  @Test
+  public void storeContextsSkipsExisting() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    Term term = database.findTerm("blah");
+    database.storeTerms(Arrays.asList(term));
+
+    Context context1 = database.newContext(term, "blah.txt", 1, 10);
+    context1.setTextSegment("blah di blah");
+    context1.save();
+
+    Context sameContext = database.newContext(term, "blah.txt", 1, 10);
+    sameContext.setTextSegment("blah di blah");
+    Context context2 = database.newContext(term, "blah.txt", 21, 30);
+    context2.setTextSegment("and blah di blah");
+    database.storeContexts(Arrays.asList(sameContext, context2));
+
+    Term loadedTerm = database.findTerm("blah");
+    assertEquals(2, loadedTerm.getFrequency());
+
+    List<Context> contexts = loadedTerm.getContexts();
+    assertEquals(context1, contexts.get(0));
+    assertEquals(context2, contexts.get(1));
+  }
+
+  @Test
+  public void storeManyTermsAndContexts() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    Term existingTerm = database.findTerm("blah 0");
+    existingTerm.save();
+
+    List<Term> terms = new ArrayList<>();
+    for (int i = 0; i < 50; i++)
+      terms.add(database.findTerm("blah " + i));
+    Term sameTerm = database.findTerm("blah 1");
+    terms.add(sameTerm);
+    database.storeTerms(terms);
+
+    assertEquals(((PostGresTerm) existingTerm).getId(), ((PostGresTerm) terms.get(0)).getId());
+    assertEquals(((PostGresTerm) terms.get(1)).getId(), ((PostGresTerm) sameTerm).getId());
+
+    List<Context> contexts = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      Context context = database.newContext(terms.get(i), "blah.txt", i, 10);
+      context.setTextSegment("blah di blah " + i);
+      contexts.add(context);
+    }
+    Context sameContext = database.newContext(terms.get(1), "blah.txt", 1, 10);
+    sameContext.setTextSegment("blah di blah 1");
+    contexts.add(sameContext);
+    database.storeContexts(contexts);
+
+    for (int i = 0; i < 50; i++) {
+      Term loadedTerm = database.findTerm("blah " + i);
+      assertEquals(1, loadedTerm.getFrequency());
+      assertEquals(contexts.get(i), loadedTerm.getContexts().get(0));
+    }
+  }
+
+  @Test
+  public void storeTermsAndContextsInKeyOrder() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    Term termC = database.findTerm("c");
+    Term termA = database.findTerm("a");
+    Term termB = database.findTerm("b");
+    database.storeTerms(Arrays.asList(termC, termA, termB));
+
+    int idA = ((PostGresTerm) termA).getId();
+    int idB = ((PostGresTerm) termB).getId();
+    int idC = ((PostGresTerm) termC).getId();
+    assertTrue(idA < idB);
+    assertTrue(idB < idC);
+
+    Context context1 = database.newContext(termA, "blah.txt", 21, 30);
+    context1.setTextSegment("and a");
+    Context context2 = database.newContext(termA, "blah.txt", 1, 10);
+    context2.setTextSegment("a");
+    database.storeContexts(Arrays.asList(context1, context2));
+
+    assertTrue(((PostGresContext) context2).getId() < ((PostGresContext) context1).getId());
+  }
+
+  @Test
+  public void resolveTerm() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    Term term = database.resolveTerm("blah");
+    assertTrue(term.isNew());
+    term.setLexicalWordCount(1);
+    term.save();
+
+    Term resolvedTerm = database.resolveTerm("blah");
+    assertFalse(resolvedTerm.isNew());
+    assertEquals(term, resolvedTerm);
+    assertEquals(1, resolvedTerm.getLexicalWordCount());
+  }
+
+  @Test
+  public void addExpansionToExistingTerm() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    Term expansion1 = database.findTerm("expansion blah 1");
+    expansion1.save();
+    database.findContext(expansion1, "blah.txt", 1, 10).save();
+    Term expansion2 = database.findTerm("expansion blah 2");
+    expansion2.save();
+    database.findContext(expansion2, "blah.txt", 21, 30).save();
+
+    Term term = database.findTerm("blah");
+    term.addExpansion(expansion1);
+    term.save();
+    database.findContext(term, "blah.txt", 41, 50).save();
+
+    // the existing expansion is added again without being loaded first
+    Term resolvedTerm = database.resolveTerm("blah");
+    resolvedTerm.addExpansion(expansion1);
+    resolvedTerm.addExpansion(expansion2);
+    resolvedTerm.save();
+
+    Term loadedTerm = database.findTerm("blah");
+    assertEquals(2, loadedTerm.getExpansionCount());
+    Set<Term> expectedExpansions = new HashSet<>(Arrays.asList(expansion1, expansion2));
+    assertEquals(expectedExpansions, loadedTerm.getExpansions());
+
+    // adding an expansion which is already stored leaves the count unchanged
+    Term foundTerm = database.findTerm("blah");
+    foundTerm.addExpansion(expansion2);
+    foundTerm.save();
+    assertEquals(2, foundTerm.getExpansionCount());
+  }
+
+  @Test
+  public void findMarkedTermsByAncestorFrequency() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    Term chat = database.findTerm("chat");
+    chat.save();
+    database.findContext(chat, "blah.txt", 1, 10).save();
+    database.findContext(chat, "blah.txt", 2, 10).save();
+    database.findContext(chat, "blah.txt", 3, 10).save();
+
+    Term petitChat = database.findTerm("petit chat");
+    petitChat.setMarked(true);
+    petitChat.save();
+    database.findContext(petitChat, "blah.txt", 3, 4).save();
+
+    Term grosChien = database.findTerm("gros chien");
+    grosChien.setMarked(true);
+    grosChien.save();
+    database.findContext(grosChien, "blah.txt", 4, 4).save();
+
+    chat.addExpansion(petitChat);
+    chat.save();
+
+    List<Term> terms = database.findTerms(3, null, 0, true);
+    assertEquals(Arrays.asList(petitChat), terms);
+    assertEquals(1, terms.get(0).getFrequency());
+  }
+
+  @Test
+  public void findTermPages() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    String[] texts = new String[] { "chat", "chien", "oiseau" };
+    int[] frequencies = new int[] { 1, 2, 1 };
+    for (int i = 0; i < texts.length; i++) {
+      Term term = database.findTerm(texts[i]);
+      term.save();
+      for (int j = 0; j < frequencies[i]; j++)
+        database.findContext(term, "blah.txt", i, j).save();
+    }
+
+    List<Term> page1 = database.findTerms(0, null, TermSearchMode.PREFIX, 0, null, null, 2);
+    assertEquals(2, page1.size());
+    assertEquals("chien", page1.get(0).getText());
+    assertEquals("chat", page1.get(1).getText());
+
+    List<Term> page2 = database.findTerms(0, null, TermSearchMode.PREFIX, 0, null, page1.get(1), 2);
+    assertEquals(1, page2.size());
+    assertEquals("oiseau", page2.get(0).getText());
+  }
+
+  @Test
+  public void findTermsBySubstring() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    Term chat = database.findTerm("petit chat");
+    chat.save();
+    database.findContext(chat, "blah.txt", 1, 1).save();
+    Term chien = database.findTerm("chien");
+    chien.save();
+    database.findContext(chien, "blah.txt", 2, 1).save();
+
+    assertEquals(0, database.findTerms(0, "chat", 0, null).size());
+    assertEquals(Arrays.asList(chat), database.findTerms(0, "chat", TermSearchMode.SUBSTRING, 0, null));
+  }
+
+  @Test
+  public void getContextsForSeveralTerms() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    Term chat = database.findTerm("chat");
+    chat.save();
+    Context chatContext1 = database.findContext(chat, "blah.txt", 1, 1);
+    chatContext1.save();
+    Context chatContext2 = database.findContext(chat, "blah.txt", 2, 1);
+    chatContext2.save();
+    Term chien = database.findTerm("chien");
+    chien.save();
+    Context chienContext = database.findContext(chien, "blah.txt", 3, 1);
+    chienContext.save();
+    Term oiseau = database.findTerm("oiseau");
+    oiseau.save();
+
+    Map<Term, List<Context>> contextMap = database.getContexts(Arrays.asList(chat, chien, oiseau), 0);
+    assertEquals(Arrays.asList(chatContext1, chatContext2), contextMap.get(chat));
+    assertEquals(Arrays.asList(chienContext), contextMap.get(chien));
+    assertFalse(contextMap.containsKey(oiseau));
+
+    contextMap = database.getContexts(Arrays.asList(chat, chien), 1);
+    assertEquals(Arrays.asList(chatContext1), contextMap.get(chat));
+    assertEquals(Arrays.asList(chienContext), contextMap.get(chien));
+  }
+
+  @Test
+  public void deleteProject() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    Term term = database.findTerm("chat");
+    term.save();
+    database.findContext(term, "blah.txt", 1, 1).save();
+    int projectId = database.getCurrentProjectId();
+
+    database.deleteProject();
+
+    Term loadedTerm = database.findTerm("chat");
+    assertFalse(loadedTerm.isNew());
+    assertEquals(0, loadedTerm.getFrequency());
+    assertEquals(0, loadedTerm.getContexts().size());
+    assertTrue(database.getCurrentProjectId() != projectId);
+  }
+
+  @Test
+  public void concurrentAsyncLookups() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    Term head = database.findTerm("chat");
+    head.save();
+    Context headContext = database.findContext(head, "blah.txt", 1, 1);
+    headContext.save();
+    Term expansion = database.findTerm("petit chat noir");
+    expansion.save();
+    database.findContext(expansion, "blah.txt", 2, 1).save();
+
+    Term term = database.findTerm("petit chat");
+    term.addHead(head);
+    term.addExpansion(expansion);
+    term.save();
+    Context context = database.findContext(term, "blah.txt", 2, 1);
+    context.save();
+
+    CompletableFuture<Set<Term>> heads = database.getHeadsAsync(term);
+    CompletableFuture<Set<Term>> expansions = database.getExpansionsAsync(term);
+    CompletableFuture<List<Context>> contexts = database.getContextsAsync(term);
+    CompletableFuture.allOf(heads, expansions, contexts).get(10, TimeUnit.SECONDS);
+
+    assertEquals(new HashSet<>(Arrays.asList(head)), heads.get());
+    assertEquals(new HashSet<>(Arrays.asList(expansion)), expansions.get());
+    assertEquals(Arrays.asList(context), contexts.get());
+  }
+
+  @Test
+  public void readsGoToPrimaryAfterWrite() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    DataSource replica = mock(DataSource.class);
+    database.setReadDataSource(replica);
+    assertEquals(replica, database.getReadDataSource());
+
+    Term term = database.findTerm("chat");
+    term.save();
+    assertEquals(database.getDataSource(), database.getReadDataSource());
+  }
+
+  @Test
+  public void retryAfterFailedCommit() throws Exception {
+    Config jdbcConfig = ConfigFactory.parseString("transactional = true, term-cache-size = 100")
+        .withFallback(config.getConfig("talismane.terminology.jdbc"));
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode, jdbcConfig);
+
+    // any transaction which inserts the term "poison" fails on commit
+    JdbcTemplate jt = new JdbcTemplate(database.getDataSource());
+    jt.execute("CREATE OR REPLACE FUNCTION fail_on_poison() RETURNS trigger AS $$"
+        + " BEGIN IF NEW.term_text = 'poison' THEN RAISE EXCEPTION 'poisoned'; END IF; RETURN NEW; END;"
+        + " $$ LANGUAGE plpgsql");
+    jt.execute("CREATE CONSTRAINT TRIGGER trg_fail_on_poison AFTER INSERT ON term"
+        + " DEFERRABLE INITIALLY DEFERRED FOR EACH ROW EXECUTE PROCEDURE fail_on_poison()");
+    try {
+      Term chat = database.resolveTerm("chat");
+      Term poison = database.resolveTerm("poison");
+      database.storeTerms(Arrays.asList(chat, poison));
+      database.storeContexts(Arrays.asList(database.newContext(chat, "blah.txt", 1, 1)));
+      try {
+        database.commit();
+        fail("Commit should have failed");
+      } catch (RuntimeException e) {
+        database.rollback();
+      }
+
+      // the ids allocated for the term and the file were rolled back
+      chat = database.resolveTerm("chat");
+      assertTrue(chat.isNew());
+      database.storeTerms(Arrays.asList(chat));
+      database.storeContexts(Arrays.asList(database.newContext(chat, "blah.txt", 1, 1)));
+      database.commit();
+    } finally {
+      jt.execute("DROP TRIGGER IF EXISTS trg_fail_on_poison ON term");
+      jt.execute("DROP FUNCTION IF EXISTS fail_on_poison()");
+    }
+
+    Term loadedTerm = database.findTerm("chat");
+    assertEquals(1, loadedTerm.getFrequency());
+    assertEquals("blah.txt", loadedTerm.getContexts().get(0).getFileName());
+  }
+
+  @Test
+  public void projectIsCreatedOutsideWriteTransaction() throws Exception {
+    Config jdbcConfig = ConfigFactory.parseString("transactional = true")
+        .withFallback(config.getConfig("talismane.terminology.jdbc"));
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode, jdbcConfig);
+    PostGresTerminologyBase otherDatabase = new PostGresTerminologyBase(projectCode);
+    try {
+      Term chat = database.resolveTerm("chat");
+      database.storeTerms(Arrays.asList(chat));
+      database.storeContexts(Arrays.asList(database.newContext(chat, "blah.txt", 1, 1)));
+
+      // while the write transaction is still open, the project can already be
+      // seen by others, and no lock is held on the partitioned tables
+      JdbcTemplate jt = new JdbcTemplate(otherDatabase.getDataSource());
+      assertEquals(Integer.valueOf(1), jt.queryForObject("SELECT count(*) FROM project WHERE project_code = ?", Integer.class, projectCode));
+      assertEquals(Integer.valueOf(0), jt.queryForObject("SELECT count(*) FROM pg_locks"
+          + " WHERE relation IN ('context'::regclass, 'term_stats'::regclass) AND mode = 'AccessExclusiveLock'", Integer.class));
+
+      database.commit();
+    } finally {
+      // don't leave the transaction open if an assertion failed
+      database.rollback();
+      otherDatabase.close();
+    }
+
+    Term loadedTerm = database.findTerm("chat");
+    assertEquals(1, loadedTerm.getFrequency());
+  }
+
+  @Test
+  public void closeStopsAsyncReadsAndPools() throws Exception {
+    PostGresTerminologyBase database = new PostGresTerminologyBase(projectCode);
+    database.findTerm("chat").save();
+    assertFalse(database.findTermAsync("chat").get(10, TimeUnit.SECONDS).isNew());
+
+    database.close();
+    assertTrue(((HikariDataSource) database.getDataSource()).isClosed());
+    try {
+      database.findTermAsync("chat");
+      fail("Async reads should be rejected once closed");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+  }
 }
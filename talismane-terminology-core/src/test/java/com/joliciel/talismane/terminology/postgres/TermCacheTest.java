@@ -0,0 +1,27 @@
+package com.joliciel.talismane.terminology.postgres;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TermCacheTest {
+
+  @Test
+  public void testTermsAreCached() throws Exception {
+    TermCache termCache = new TermCache(10);
+    termCache.put("chat", 1, 1);
+    termCache.put("petit chat", 3, 2);
+
+    assertEquals(3, termCache.get("petit chat").getTermId());
+    assertEquals(2, termCache.get("petit chat").getLexicalWordCount());
+    assertNull(termCache.get("chien"));
+    assertEquals(2, termCache.getSize());
+    assertEquals(2, termCache.getHitCount());
+    assertEquals(1, termCache.getMissCount());
+
+    termCache.clear();
+    assertNull(termCache.get("chat"));
+    assertEquals(0, termCache.getSize());
+  }
+}
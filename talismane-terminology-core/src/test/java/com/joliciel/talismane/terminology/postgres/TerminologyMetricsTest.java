@@ -0,0 +1,85 @@
+package com.joliciel.talismane.terminology.postgres;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TerminologyMetricsTest {
+
+  @Test
+  public void testOperationsAreTimed() throws Exception {
+    TerminologyMetrics metrics = new TerminologyMetrics();
+    for (int i = 0; i < 3; i++) {
+      try (TerminologyMetrics.Timer timer = metrics.time("getHeads")) {
+        timer.setRows(2);
+      }
+    }
+    try (TerminologyMetrics.Timer timer = metrics.time("findTerms")) {
+      timer.addRow();
+    }
+
+    // operations are sorted by name
+    List<TerminologyMetrics.OperationStatistics> operations = metrics.getOperations();
+    assertEquals(2, operations.size());
+
+    TerminologyMetrics.OperationStatistics findTerms = operations.get(0);
+    assertEquals("findTerms", findTerms.getName());
+    assertEquals(1, findTerms.getCount());
+    assertEquals(1, findTerms.getRows());
+
+    TerminologyMetrics.OperationStatistics getHeads = operations.get(1);
+    assertEquals("getHeads", getHeads.getName());
+    assertEquals(3, getHeads.getCount());
+    assertEquals(6, getHeads.getRows());
+
+    metrics.reset();
+    assertEquals(0, metrics.getOperations().size());
+  }
+
+  @Test
+  public void testHistogram() throws Exception {
+    TerminologyMetrics metrics = new TerminologyMetrics();
+    for (int i = 0; i < 98; i++)
+      metrics.record("findTerms", TimeUnit.MICROSECONDS.toNanos(500), 1);
+    metrics.record("findTerms", TimeUnit.MILLISECONDS.toNanos(25), 1);
+    metrics.record("findTerms", TimeUnit.MILLISECONDS.toNanos(3000), 1);
+
+    TerminologyMetrics.OperationStatistics findTerms = metrics.getOperations().get(0);
+    assertEquals(100, findTerms.getCount());
+    assertEquals(100, findTerms.getRows());
+    // buckets: <1, <2, <5, <10, <20, <50, <100, <200, <500, <1000, <2000, <5000,
+    // <10000, >=10000 ms
+    assertArrayEquals(new long[] { 98, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 1, 0, 0 }, findTerms.getHistogram());
+    assertEquals(3000.0, findTerms.getMaxMillis(), 0.0001);
+    assertEquals(1.0, findTerms.getP50Millis(), 0.0001);
+    assertEquals(1.0, findTerms.getP95Millis(), 0.0001);
+    assertEquals(50.0, findTerms.getP99Millis(), 0.0001);
+  }
+
+  @Test
+  public void testResetClearsPoolStatistics() throws Exception {
+    TerminologyMetrics metrics = new TerminologyMetrics();
+    IMetricsTracker tracker = metrics.create("pool", new PoolStats(0) {
+      @Override
+      protected void update() {
+      }
+    });
+    tracker.recordConnectionAcquiredNanos(TimeUnit.MILLISECONDS.toNanos(3));
+    tracker.recordConnectionTimeout();
+
+    TerminologyMetrics.PoolStatistics pool = metrics.getPools().get(0);
+    assertEquals(1, pool.getConnectionTimeouts());
+    assertEquals(1, pool.getConnectionWait().getCount());
+
+    metrics.reset();
+    pool = metrics.getPools().get(0);
+    assertEquals(0, pool.getConnectionTimeouts());
+    assertEquals(0, pool.getConnectionWait().getCount());
+  }
+}